@@ -0,0 +1,61 @@
+package io.github.stepping1st.hh.benchmark;
+
+
+import io.github.stepping1st.hh.Query;
+import io.github.stepping1st.hh.search.Search;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Index construction of every engine.
+ * <p>
+ * hash functions are drawn from a fresh random data of a fixed seed, so
+ * every invocation builds the same index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BuildBenchmark {
+    @Param({"BH", "EH", "MH", "NH", "FH"})
+    private Engine engine;
+    @Param({"10000", "100000"})
+    private int n;
+    @Param({"32", "128"})
+    private int d;
+    @Param({"8"})
+    private int m;
+    @Param({"16"})
+    private int l;
+    private double[][] data;
+
+    /**
+     * generate data.
+     */
+    @Setup
+    public final void setup() {
+        data = Datasets.points(n, d, Datasets.DATA_SEED);
+    }
+
+    /**
+     * @return built searcher
+     */
+    @Benchmark
+    public final Search<Query> build() {
+        return engine.build(data, m, l, Datasets.random(Datasets.HASH_SEED));
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.stepping1st.hh.benchmark;
+
+
+import org.apache.commons.math.random.JDKRandomGenerator;
+import org.apache.commons.math.random.RandomData;
+import org.apache.commons.math.random.RandomDataImpl;
+
+import java.util.Random;
+
+
+/**
+ * Synthetic data of fixed seeds.
+ * <p>
+ * the same seed generates the same data, hash functions and queries, so
+ * numbers before and after a change are measured on the same input.
+ */
+public final class Datasets {
+    /**
+     * seed of data.
+     */
+    public static final long DATA_SEED = 7L;
+    /**
+     * seed of queries.
+     */
+    public static final long QUERY_SEED = 11L;
+    /**
+     * seed of hash functions and buckets.
+     */
+    public static final long HASH_SEED = 13L;
+
+    private Datasets() {
+    }
+
+    /**
+     * @param n    number of vectors
+     * @param d    dimension of vector
+     * @param seed random seed
+     * @return vectors of standard normal values
+     */
+    public static double[][] gaussian(final int n, final int d,
+                                      final long seed) {
+        Random random = new Random(seed);
+        double[][] data = new double[n][d];
+        for (double[] row : data) {
+            for (int i = 0; i < d; i++) {
+                row[i] = random.nextGaussian();
+            }
+        }
+        return data;
+    }
+
+    /**
+     * hyperplane queries, normal vector and offset of a hyperplane.
+     *
+     * @param n    number of queries
+     * @param d    dimension of data
+     * @param seed random seed
+     * @return queries of dimension d + 1
+     */
+    public static double[][] hyperplanes(final int n, final int d,
+                                         final long seed) {
+        return gaussian(n, d + 1, seed);
+    }
+
+    /**
+     * @param n    number of vectors
+     * @param d    dimension of vector
+     * @param seed random seed
+     * @return vectors of standard normal values and a trailing one
+     */
+    public static double[][] points(final int n, final int d,
+                                    final long seed) {
+        double[][] data = gaussian(n, d + 1, seed);
+        for (double[] row : data) {
+            row[d] = 1.0D;
+        }
+        return data;
+    }
+
+    /**
+     * @param seed random seed
+     * @return random data of seed
+     */
+    public static RandomData random(final long seed) {
+        JDKRandomGenerator rg = new JDKRandomGenerator();
+        rg.setSeed(seed);
+        return new RandomDataImpl(rg);
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.stepping1st.hh.benchmark;
+
+
+import io.github.stepping1st.hh.Dist;
+import io.github.stepping1st.hh.FHQuery;
+import io.github.stepping1st.hh.HashBucket;
+import io.github.stepping1st.hh.Precision;
+import io.github.stepping1st.hh.Query;
+import io.github.stepping1st.hh.hash.BHHash;
+import io.github.stepping1st.hh.hash.EHHash;
+import io.github.stepping1st.hh.hash.FHHash;
+import io.github.stepping1st.hh.hash.MHHash;
+import io.github.stepping1st.hh.hash.NHHash;
+import io.github.stepping1st.hh.search.FHSearch;
+import io.github.stepping1st.hh.search.HashSearch;
+import io.github.stepping1st.hh.search.NHSearch;
+import io.github.stepping1st.hh.search.Search;
+import org.apache.commons.math.random.RandomData;
+
+
+/**
+ * Search engines under benchmark.
+ * <p>
+ * m and l follow the examples: m is the single hasher and l the hash
+ * tables of BH, EH and MH, m is the single hasher of NH, and m is the hash
+ * tables and l the separation threshold of FH.
+ */
+public enum Engine {
+    BH {
+        @Override
+        public Search<Query> build(final double[][] data, final int m,
+                                   final int l, final RandomData rd) {
+            int dim = data[0].length;
+            BHHash hash = new BHHash(dim, m, l, rd, Precision.DOUBLE);
+            return new HashSearch(hash, Precision.DOUBLE.of(data),
+                    new HashBucket(data.length, l, Datasets.HASH_SEED));
+        }
+    },
+    EH {
+        @Override
+        public Search<Query> build(final double[][] data, final int m,
+                                   final int l, final RandomData rd) {
+            int dim = data[0].length;
+            EHHash hash = new EHHash(dim, m, l, rd, Precision.DOUBLE);
+            return new HashSearch(hash, Precision.DOUBLE.of(data),
+                    new HashBucket(data.length, l, Datasets.HASH_SEED));
+        }
+    },
+    MH {
+        @Override
+        public Search<Query> build(final double[][] data, final int m,
+                                   final int l, final RandomData rd) {
+            int dim = data[0].length;
+            MHHash hash = new MHHash(dim, m, l, MH_PROJ, rd,
+                    Precision.DOUBLE);
+            return new HashSearch(hash, Precision.DOUBLE.of(data),
+                    new HashBucket(data.length, l, Datasets.HASH_SEED));
+        }
+    },
+    NH {
+        @Override
+        public Search<Query> build(final double[][] data, final int m,
+                                   final int l, final RandomData rd) {
+            int dim = data[0].length;
+            NHHash hash = new NHHash(dim, m, SCALE_DIM, BUCKET_WIDTH, rd,
+                    Precision.DOUBLE);
+            return new NHSearch(hash, m, Precision.DOUBLE.of(data));
+        }
+    },
+    FH {
+        @Override
+        public Search<Query> build(final double[][] data, final int m,
+                                   final int l, final RandomData rd) {
+            int dim = data[0].length;
+            FHHash hash = new FHHash(dim, SCALE_DIM, rd);
+            FHSearch search = new FHSearch(hash, INTERVAL_RATIO, m,
+                    Precision.DOUBLE.of(data), rd, Precision.DOUBLE);
+            return param -> search.nns((FHQuery) param);
+        }
+
+        @Override
+        public Query query(final double[] query, final double[][] data,
+                           final int top, final int limit, final int l) {
+            return new FHQuery(query, data, top, limit, l, Dist.ABS_DOT);
+        }
+    };
+
+    /**
+     * proj vectors for a single hasher of MH.
+     */
+    private static final int MH_PROJ = 4;
+    /**
+     * scale factor of dimension of NH and FH.
+     */
+    private static final int SCALE_DIM = 2;
+    /**
+     * bucket width of NH.
+     */
+    private static final double BUCKET_WIDTH = 0.1D;
+    /**
+     * interval ratio of FH.
+     */
+    private static final double INTERVAL_RATIO = 0.9D;
+
+    /**
+     * build index of engine.
+     *
+     * @param data input data
+     * @param m    single hasher, or hash tables of FH
+     * @param l    hash tables, or separation threshold of FH
+     * @param rd   random data
+     * @return searcher
+     */
+    public abstract Search<Query> build(double[][] data, int m, int l,
+                                        RandomData rd);
+
+    /**
+     * @param query query vector
+     * @param data  input data
+     * @param top   number of top k
+     * @param limit limit number of search
+     * @param l     separation threshold of FH
+     * @return query of engine
+     */
+    public Query query(final double[] query, final double[][] data,
+                       final int top, final int limit, final int l) {
+        return new Query(query, data, top, limit, Dist.ABS_DOT);
+    }
+}
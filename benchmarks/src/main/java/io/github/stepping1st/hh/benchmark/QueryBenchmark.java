@@ -0,0 +1,78 @@
+package io.github.stepping1st.hh.benchmark;
+
+
+import io.github.stepping1st.hh.Query;
+import io.github.stepping1st.hh.SearchResult;
+import io.github.stepping1st.hh.search.Search;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Nearest neighbor search of every engine.
+ * <p>
+ * the index is built once per trial, and an invocation answers the next
+ * one of a fixed set of queries, so a measurement averages over them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+    private static final int QUERIES = 128;
+    @Param({"BH", "EH", "MH", "NH", "FH"})
+    private Engine engine;
+    @Param({"10000", "100000"})
+    private int n;
+    @Param({"32", "128"})
+    private int d;
+    @Param({"8"})
+    private int m;
+    @Param({"16"})
+    private int l;
+    @Param({"10"})
+    private int top;
+    @Param({"1000"})
+    private int limit;
+    private Search<Query> search;
+    private Query[] queries;
+    private int next;
+
+    /**
+     * build index and queries.
+     */
+    @Setup
+    public final void setup() {
+        double[][] data = Datasets.points(n, d, Datasets.DATA_SEED);
+        search = engine.build(data, m, l, Datasets.random(Datasets.HASH_SEED));
+        double[][] planes = Datasets.hyperplanes(QUERIES, d,
+                Datasets.QUERY_SEED);
+        queries = new Query[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = engine.query(planes[i], data, top, limit, l);
+        }
+    }
+
+    /**
+     * @return found elements of the next query
+     */
+    @Benchmark
+    public final SearchResult nns() {
+        Query query = queries[next];
+        next = (next + 1) % QUERIES;
+        return search.nns(query);
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.stepping1st.hh.benchmark.kernel;
+
+
+import io.github.stepping1st.hh.HashBucket;
+import io.github.stepping1st.hh.Visited;
+import io.github.stepping1st.hh.benchmark.Datasets;
+import io.github.stepping1st.hh.hash.BHHash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * Bucket lookup of {@link HashBucket} over frozen BH signatures.
+ */
+@State(Scope.Thread)
+public class BucketBenchmark extends KernelBenchmark {
+    private static final int QUERIES = 128;
+    @Param({"100000"})
+    private int n;
+    @Param({"32"})
+    private int d;
+    @Param({"8"})
+    private int m;
+    @Param({"16", "64"})
+    private int l;
+    @Param({"1000", "10000"})
+    private int limit;
+    private HashBucket bucket;
+    private int[][] queries;
+    private int next;
+
+    /**
+     * hash data into buckets and hash queries.
+     */
+    @Setup
+    public final void setup() {
+        BHHash hash = new BHHash(d + 1, m, l,
+                Datasets.random(Datasets.HASH_SEED));
+        double[][] data = Datasets.points(n, d, Datasets.DATA_SEED);
+        bucket = new HashBucket(n, l, Datasets.HASH_SEED);
+        for (int i = 0; i < n; i++) {
+            bucket.insert(i, hash.data(data[i]));
+        }
+        bucket.freeze();
+        double[][] planes = Datasets.hyperplanes(QUERIES, d,
+                Datasets.QUERY_SEED);
+        queries = new int[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = hash.query(planes[i]);
+        }
+    }
+
+    /**
+     * @param bh blackhole consuming candidates
+     * @return visit count of the next query
+     */
+    @Benchmark
+    public final Visited search(final Blackhole bh) {
+        next = (next + 1) % QUERIES;
+        return bucket.search(queries[next], limit, bh::consume);
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.stepping1st.hh.benchmark.kernel;
+
+
+import io.github.stepping1st.hh.Dist;
+import io.github.stepping1st.hh.Precision;
+import io.github.stepping1st.hh.VectorStore;
+import io.github.stepping1st.hh.benchmark.Datasets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+
+/**
+ * Distances of {@link Dist} over arrays and vector stores.
+ * <p>
+ * an invocation measures the next row of the data, so rows are not all
+ * in the cache.
+ */
+@State(Scope.Thread)
+public class DistBenchmark extends KernelBenchmark {
+    private static final int ROWS = 4096;
+    @Param({"ABS_DOT", "COS", "DP2H"})
+    private String dist;
+    @Param({"32", "128"})
+    private int d;
+    private Dist fun;
+    private double[] query;
+    private double[][] data;
+    private VectorStore doubles;
+    private VectorStore floats;
+    private int next;
+
+    /**
+     * generate data and query.
+     *
+     * @throws ReflectiveOperationException if dist is not a distance
+     */
+    @Setup
+    public final void setup() throws ReflectiveOperationException {
+        fun = (Dist) Dist.class.getField(dist).get(null);
+        data = Datasets.points(ROWS, d, Datasets.DATA_SEED);
+        doubles = Precision.DOUBLE.of(data);
+        floats = Precision.FLOAT.of(data);
+        query = Datasets.hyperplanes(1, d, Datasets.QUERY_SEED)[0];
+    }
+
+    /**
+     * @return distance from query to the next array
+     */
+    @Benchmark
+    public final double array() {
+        next = (next + 1) % ROWS;
+        return fun.distance(query, data[next]);
+    }
+
+    /**
+     * @return distance from query to the next row of double store
+     */
+    @Benchmark
+    public final double doubleStore() {
+        next = (next + 1) % ROWS;
+        return fun.distance(query, doubles, next);
+    }
+
+    /**
+     * @return distance from query to the next row of float store
+     */
+    @Benchmark
+    public final double floatStore() {
+        next = (next + 1) % ROWS;
+        return fun.distance(query, floats, next);
+    }
+}
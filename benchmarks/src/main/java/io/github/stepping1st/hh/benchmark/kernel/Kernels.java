@@ -0,0 +1,39 @@
+package io.github.stepping1st.hh.benchmark.kernel;
+
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Run kernel benchmarks with the gc profiler.
+ * <p>
+ * every kernel reports ops/s together with its allocation rate, other
+ * arguments are those of the JMH command line.
+ */
+public final class Kernels {
+
+    private Kernels() {
+    }
+
+    /**
+     * @param args JMH command line options
+     * @throws CommandLineOptionException if options are invalid
+     * @throws RunnerException            if a benchmark failed
+     */
+    public static void main(final String[] args)
+            throws CommandLineOptionException, RunnerException {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        if (cmd.getIncludes().isEmpty()) {
+            builder.include(Kernels.class.getPackage().getName() + ".");
+        }
+        new Runner(builder.parent(cmd)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.stepping1st.hh.benchmark.kernel;
+
+
+import io.github.stepping1st.hh.IntNDArray;
+import io.github.stepping1st.hh.Precision;
+import io.github.stepping1st.hh.SortedLCCS;
+import io.github.stepping1st.hh.Visited;
+import io.github.stepping1st.hh.benchmark.Datasets;
+import io.github.stepping1st.hh.hash.NHHash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * Sort and search of {@link SortedLCCS} over NH signatures.
+ * <p>
+ * comparison of circular co-substrings dominates the sort, and the binary
+ * search of matched locations and the scan around them dominate the
+ * search.
+ */
+@State(Scope.Thread)
+public class LccsBenchmark extends KernelBenchmark {
+    private static final int QUERIES = 128;
+    private static final int SCALE_DIM = 2;
+    private static final double BUCKET_WIDTH = 0.1D;
+    @Param({"10000"})
+    private int n;
+    @Param({"32"})
+    private int d;
+    @Param({"8", "64"})
+    private int m;
+    @Param({"2"})
+    private int step;
+    private IntNDArray sigs;
+    private SortedLCCS lccs;
+    private int[][] queries;
+    private int next;
+
+    /**
+     * hash data and queries.
+     */
+    @Setup
+    public final void setup() {
+        NHHash hash = new NHHash(d + 1, m, SCALE_DIM, BUCKET_WIDTH,
+                Datasets.random(Datasets.HASH_SEED));
+        int[][] data = hash.data(Precision.DOUBLE.of(
+                Datasets.points(n, d, Datasets.DATA_SEED)));
+        sigs = new IntNDArray(new int[]{n, m});
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < m; j++) {
+                sigs.set(data[i][j], i, j);
+            }
+        }
+        lccs = new SortedLCCS(1, sigs);
+        double[][] planes = Datasets.hyperplanes(QUERIES, d,
+                Datasets.QUERY_SEED);
+        queries = new int[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = hash.query(planes[i]);
+        }
+    }
+
+    /**
+     * @return signatures sorted by every dimension
+     */
+    @Benchmark
+    public final SortedLCCS sort() {
+        return new SortedLCCS(1, sigs);
+    }
+
+    /**
+     * @param bh blackhole consuming candidates
+     * @return visit count of the next query
+     */
+    @Benchmark
+    public final Visited search(final Blackhole bh) {
+        next = (next + 1) % QUERIES;
+        return lccs.search(step, queries[next], bh::consume);
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.stepping1st.hh.benchmark.kernel;
+
+
+import io.github.stepping1st.hh.Op;
+import io.github.stepping1st.hh.benchmark.Datasets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+
+/**
+ * Dot product kernels of {@link Op}.
+ * <p>
+ * b holds two consecutive vectors, so the bilinear kernels read both.
+ */
+@State(Scope.Thread)
+public class OpBenchmark extends KernelBenchmark {
+    @Param({"16", "128", "1024"})
+    private int d;
+    private double[] a;
+    private double[] b;
+    private float[] fb;
+
+    /**
+     * generate vectors.
+     */
+    @Setup
+    public final void setup() {
+        a = Datasets.gaussian(1, d, Datasets.DATA_SEED)[0];
+        b = Datasets.gaussian(1, 2 * d, Datasets.QUERY_SEED)[0];
+        fb = new float[b.length];
+        for (int i = 0; i < b.length; i++) {
+            fb[i] = (float) b[i];
+        }
+    }
+
+    /**
+     * @return dot product of vectors of the same length
+     */
+    @Benchmark
+    public final double dot() {
+        return Op.dot(a, a);
+    }
+
+    /**
+     * @return dot product of the first dim values
+     */
+    @Benchmark
+    public final double dotDim() {
+        return Op.dot(a, b, d);
+    }
+
+    /**
+     * @return dot product from start of b
+     */
+    @Benchmark
+    public final double dotStart() {
+        return Op.dot(a, d, b);
+    }
+
+    /**
+     * @return dot product from each start
+     */
+    @Benchmark
+    public final double dotRange() {
+        return Op.dot(a, 0, b, d, d);
+    }
+
+    /**
+     * @return dot product with float type vector
+     */
+    @Benchmark
+    public final double dotFloat() {
+        return Op.dot(a, 0, fb, d, d);
+    }
+
+    /**
+     * @return product of dot products of two consecutive vectors
+     */
+    @Benchmark
+    public final double bilinear() {
+        return Op.bilinear(a, 0, b, 0, d);
+    }
+
+    /**
+     * @return product of dot products of two consecutive float vectors
+     */
+    @Benchmark
+    public final double bilinearFloat() {
+        return Op.bilinear(a, 0, fb, 0, d);
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.stepping1st.hh.benchmark.kernel;
+
+
+import io.github.stepping1st.hh.IdxVal;
+import io.github.stepping1st.hh.Precision;
+import io.github.stepping1st.hh.RQALSH;
+import io.github.stepping1st.hh.benchmark.Datasets;
+import io.github.stepping1st.hh.hash.FHHash;
+import it.unimi.dsi.fastutil.ints.IntList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+
+/**
+ * Furthest neighbor scan of {@link RQALSH} over a block of FH.
+ * <p>
+ * queries are scaled to the max norm M as FH does before searching.
+ */
+@State(Scope.Thread)
+public class RqalshBenchmark extends KernelBenchmark {
+    private static final int QUERIES = 128;
+    private static final int SCALE_DIM = 2;
+    @Param({"10000"})
+    private int n;
+    @Param({"32"})
+    private int d;
+    @Param({"8", "32"})
+    private int m;
+    @Param({"2", "4"})
+    private int l;
+    @Param({"1000"})
+    private int limit;
+    private RQALSH rqalsh;
+    private IdxVal[][] queries;
+    private int next;
+
+    /**
+     * hash data into a block and sample queries.
+     */
+    @Setup
+    public final void setup() {
+        FHHash hash = new FHHash(d + 1, SCALE_DIM,
+                Datasets.random(Datasets.HASH_SEED));
+        FHHash.Transform transform = hash.data(Precision.DOUBLE.of(
+                Datasets.points(n, d, Datasets.DATA_SEED)));
+        int[] index = new int[n];
+        for (int i = 0; i < n; i++) {
+            index[i] = i;
+        }
+        rqalsh = new RQALSH(hash.fhdim(), m, index, transform.norm(),
+                transform.samples(), Datasets.random(Datasets.HASH_SEED),
+                Precision.DOUBLE);
+        double[][] planes = Datasets.hyperplanes(QUERIES, d,
+                Datasets.QUERY_SEED);
+        queries = new IdxVal[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            IdxVal[] sample = hash.query(planes[i]);
+            double norm = 0.0D;
+            for (IdxVal w : sample) {
+                norm += w.value() * w.value();
+            }
+            double lambda = Math.sqrt(transform.M() / norm);
+            for (int j = 0; j < sample.length; j++) {
+                IdxVal w = sample[j];
+                sample[j] = new IdxVal(w.idx(), w.value() * lambda);
+            }
+            queries[i] = sample;
+        }
+    }
+
+    /**
+     * @return candidates of the next query
+     */
+    @Benchmark
+    public final IntList fns() {
+        next = (next + 1) % QUERIES;
+        IdxVal[] query = queries[next];
+        return rqalsh.fns(l, limit, -1.0D, query.length, query);
+    }
+}
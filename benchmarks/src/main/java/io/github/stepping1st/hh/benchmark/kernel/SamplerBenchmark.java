@@ -0,0 +1,53 @@
+package io.github.stepping1st.hh.benchmark.kernel;
+
+
+import io.github.stepping1st.hh.IdxVal;
+import io.github.stepping1st.hh.RandSampler;
+import io.github.stepping1st.hh.benchmark.Datasets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+
+/**
+ * Sampling of {@link RandSampler}, the transform of FH.
+ */
+@State(Scope.Thread)
+public class SamplerBenchmark extends KernelBenchmark {
+    @Param({"32", "128"})
+    private int d;
+    @Param({"2", "8"})
+    private int s;
+    private RandSampler sampler;
+    private double[] data;
+    private double[] query;
+
+    /**
+     * generate sampler and vectors.
+     */
+    @Setup
+    public final void setup() {
+        sampler = new RandSampler(d + 1, s,
+                Datasets.random(Datasets.HASH_SEED));
+        data = Datasets.points(1, d, Datasets.DATA_SEED)[0];
+        query = Datasets.hyperplanes(1, d, Datasets.QUERY_SEED)[0];
+    }
+
+    /**
+     * @return sampled data
+     */
+    @Benchmark
+    public final IdxVal[] sampling() {
+        return sampler.sampling(data);
+    }
+
+    /**
+     * @return sampled query from the stream derived from query
+     */
+    @Benchmark
+    public final IdxVal[] query() {
+        return sampler.query(query);
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.stepping1st.hh;
+
+
+import java.util.Arrays;
+
+
+/**
+ * Vector store growing by appending vectors after a base store.
+ * <p>
+ * the base store is kept as it is, so a mapped store is not copied.
+ * appended vectors are kept in chunks of the base precision, and indexes
+ * of appended vectors follow the base store.
+ * <p>
+ * a single thread appends. a vector is written before the size is
+ * published, and chunks are published as a new array on growth, so other
+ * threads read every vector below a size they observed, directly or
+ * through a state published after append, without locking.
+ */
+public class AppendVectorStore implements VectorStore {
+    private static final int CHUNK_SIZE = 4096;
+    private final VectorStore base;
+    private volatile VectorStore[] chunks = new VectorStore[0];
+    private volatile int n;
+
+    /**
+     * @param base vectors before appended ones
+     */
+    public AppendVectorStore(final VectorStore base) {
+        this.base = base;
+        this.n = base.size();
+    }
+
+    /**
+     * @param vector vector to append
+     * @return index of appended vector
+     */
+    public final int append(final double[] vector) {
+        assert vector.length == dim();
+        int size = n;
+        int idx = size - base.size();
+        VectorStore[] current = chunks;
+        if (idx / CHUNK_SIZE == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = base.precision().create(
+                    CHUNK_SIZE, dim());
+            chunks = current;
+        }
+        VectorStore chunk = current[idx / CHUNK_SIZE];
+        for (int d = 0; d < vector.length; d++) {
+            chunk.set(idx % CHUNK_SIZE, d, vector[d]);
+        }
+        // publish the vector
+        n = size + 1;
+        return size;
+    }
+
+    @Override
+    public final int size() {
+        return n;
+    }
+
+    @Override
+    public final int dim() {
+        return base.dim();
+    }
+
+    @Override
+    public final Precision precision() {
+        return base.precision();
+    }
+
+    @Override
+    public final double get(final int idx, final int d) {
+        return store(idx).get(local(idx), d);
+    }
+
+    @Override
+    public final void set(final int idx, final int d, final double value) {
+        store(idx).set(local(idx), d, value);
+    }
+
+    @Override
+    public final void copy(final int idx, final double[] dest,
+                           final int pos) {
+        store(idx).copy(local(idx), dest, pos);
+    }
+
+    @Override
+    public final double dot(final int idx, final double[] a) {
+        return store(idx).dot(local(idx), a);
+    }
+
+    @Override
+    public final double dot(final int idx, final double[] a,
+                            final int start, final int len) {
+        return store(idx).dot(local(idx), a, start, len);
+    }
+
+    @Override
+    public final double product(final int idx, final int count,
+                                final double[] a, final int start) {
+        if (store(idx) == store(idx + count - 1)) {
+            return store(idx).product(local(idx), count, a, start);
+        }
+        double val = 1D;
+        for (int c = 0; c < count; ++c) {
+            val *= dot(idx + c, a, start, dim());
+        }
+        return val;
+    }
+
+    @Override
+    public final double norm(final int idx) {
+        return store(idx).norm(local(idx));
+    }
+
+    /**
+     * @param idx index of vector
+     * @return base store or chunk holding the vector
+     */
+    private VectorStore store(final int idx) {
+        if (idx < base.size()) {
+            return base;
+        }
+        return chunks[(idx - base.size()) / CHUNK_SIZE];
+    }
+
+    /**
+     * @param idx index of vector
+     * @return index of vector in its store
+     */
+    private int local(final int idx) {
+        if (idx < base.size()) {
+            return idx;
+        }
+        return (idx - base.size()) % CHUNK_SIZE;
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.stepping1st.hh;
+
+
+/**
+ * Block layout of row-major vector store.
+ * <p>
+ * vectors are laid out row by row in a single primitive buffer.
+ * if the buffer exceeds the maximum array size, rows are split into
+ * blocks of power of two rows.
+ */
+abstract class BlockVectorStore implements VectorStore {
+    private static final int MAX_BLOCK_SIZE = Integer.MAX_VALUE - 8;
+    private static final int MAX_SHIFT = 30;
+    private final int n;
+    private final int dim;
+    private final int shift;
+    private final int rowmask;
+
+    /**
+     * @param n   number of vectors
+     * @param dim dimension of vector
+     */
+    BlockVectorStore(final int n, final int dim) {
+        this.n = n;
+        this.dim = dim;
+        int shift = 0;
+        while (shift < MAX_SHIFT && (1 << shift) < n
+                && (2L << shift) * dim <= MAX_BLOCK_SIZE) {
+            ++shift;
+        }
+        this.shift = shift;
+        this.rowmask = (1 << shift) - 1;
+    }
+
+    @Override
+    public final int size() {
+        return n;
+    }
+
+    @Override
+    public final int dim() {
+        return dim;
+    }
+
+    /**
+     * @param idx index of vector
+     * @return start of the vector in its block
+     */
+    public final int offset(final int idx) {
+        return (idx & rowmask) * dim;
+    }
+
+    /**
+     * @param idx index of vector
+     * @return block of the vector
+     */
+    protected final int block(final int idx) {
+        return idx >>> shift;
+    }
+
+    /**
+     * @return number of blocks
+     */
+    protected final int blocks() {
+        return (int) (((long) n + rowmask) >>> shift);
+    }
+
+    /**
+     * @param block block index
+     * @return buffer size of the block
+     */
+    protected final int blocksize(final int block) {
+        int rows = Math.min(rowmask + 1, n - (block << shift));
+        return rows * dim;
+    }
+
+    /**
+     * @param data input data
+     * @return dimension of data
+     */
+    protected static int dim(final double[][] data) {
+        if (0 < data.length) {
+            return data[0].length;
+        } else {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.stepping1st.hh;
+
+
+/**
+ * Deadline of a single search.
+ * <p>
+ * the clock is read once every deadline.check_interval checks, so that a
+ * check in an inner loop costs a decrement. once passed, a deadline stays
+ * expired. an instance is owned by a single search.
+ */
+public final class Deadline {
+    private static final int CHECK_INTERVAL = Integer.parseInt(
+            System.getenv().getOrDefault("deadline.check_interval", "64")
+    );
+    /**
+     * deadline never expiring.
+     */
+    public static final Deadline NONE = new Deadline(false, 0L);
+    private final boolean bounded;
+    private final long deadline;
+    private int countdown = 0;
+    private boolean expired = false;
+
+    private Deadline(final boolean bounded, final long deadline) {
+        this.bounded = bounded;
+        this.deadline = deadline;
+    }
+
+    /**
+     * @param query query of search
+     * @return deadline of query
+     */
+    public static Deadline of(final Query query) {
+        if (query.deadline() == Query.NO_DEADLINE) {
+            return NONE;
+        }
+        return new Deadline(true, query.deadline());
+    }
+
+    /**
+     * check deadline, reading the clock once in a while.
+     *
+     * @return true if deadline is passed
+     */
+    public boolean check() {
+        if (!bounded) {
+            return false;
+        }
+        if (!expired && --countdown <= 0) {
+            countdown = CHECK_INTERVAL;
+            expired = 0 <= System.nanoTime() - deadline;
+        }
+        return expired;
+    }
+
+    /**
+     * @return true if a check found deadline passed
+     */
+    public boolean expired() {
+        return expired;
+    }
+}
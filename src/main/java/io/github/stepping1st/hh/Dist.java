@@ -12,6 +12,17 @@ public interface Dist {
      */
     double distance(double[] query, double[] data);
 
+    /**
+     * @param query query vector
+     * @param data  data store
+     * @param idx   index of data vector
+     * @return distance from query and data
+     */
+    default double distance(final double[] query, final VectorStore data,
+                            final int idx) {
+        return distance(query, data.row(idx));
+    }
+
     /**
      * simplification value of DP2H.
      */
@@ -20,6 +31,12 @@ public interface Dist {
         public double distance(final double[] query, final double[] data) {
             return Math.abs(Op.dot(query, data));
         }
+
+        @Override
+        public double distance(final double[] query, final VectorStore data,
+                               final int idx) {
+            return Math.abs(data.dot(idx, query));
+        }
     };
 
     /**
@@ -30,6 +47,13 @@ public interface Dist {
         public double distance(final double[] query, final double[] data) {
             return 1 - Op.dot(query, data) / (Op.norm(query) * Op.norm(data));
         }
+
+        @Override
+        public double distance(final double[] query, final VectorStore data,
+                               final int idx) {
+            return 1 - data.dot(idx, query)
+                    / (Op.norm(query) * data.norm(idx));
+        }
     };
 
     /**
@@ -43,6 +67,14 @@ public interface Dist {
             return Math.abs(query[last] + Op.dot(data, query, last))
                     / Math.sqrt(Op.dot(query, query, last));
         }
+
+        @Override
+        public double distance(final double[] query, final VectorStore data,
+                               final int idx) {
+            int last = query.length - 1;
+            return Math.abs(query[last] + data.dot(idx, query, 0, last))
+                    / Math.sqrt(Op.dot(query, query, last));
+        }
     };
 
     /**
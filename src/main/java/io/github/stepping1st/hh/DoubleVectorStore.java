@@ -0,0 +1,98 @@
+package io.github.stepping1st.hh;
+
+
+/**
+ * Double type vector store.
+ */
+public class DoubleVectorStore extends BlockVectorStore {
+    private final double[][] blocks;
+
+    /**
+     * @param n   number of vectors
+     * @param dim dimension of vector
+     */
+    public DoubleVectorStore(final int n, final int dim) {
+        super(n, dim);
+        this.blocks = new double[blocks()][];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new double[blocksize(i)];
+        }
+    }
+
+    /**
+     * @param data input data
+     */
+    public DoubleVectorStore(final double[][] data) {
+        this(data.length, dim(data));
+        for (int i = 0; i < data.length; i++) {
+            assert data[i].length == dim();
+            System.arraycopy(data[i], 0, values(i), offset(i), dim());
+        }
+    }
+
+    /**
+     * @param idx index of vector
+     * @return buffer holding the vector
+     */
+    public final double[] values(final int idx) {
+        return blocks[block(idx)];
+    }
+
+    @Override
+    public final Precision precision() {
+        return Precision.DOUBLE;
+    }
+
+    @Override
+    public final double get(final int idx, final int d) {
+        return values(idx)[offset(idx) + d];
+    }
+
+    @Override
+    public final void set(final int idx, final int d, final double value) {
+        values(idx)[offset(idx) + d] = value;
+    }
+
+    @Override
+    public final void copy(final int idx, final double[] dest, final int pos) {
+        System.arraycopy(values(idx), offset(idx), dest, pos, dim());
+    }
+
+    @Override
+    public final double dot(final int idx, final double[] a) {
+        return Op.dot(a, 0, values(idx), offset(idx), dim());
+    }
+
+    @Override
+    public final double dot(final int idx, final double[] a,
+                            final int start, final int len) {
+        return Op.dot(a, start, values(idx), offset(idx), len);
+    }
+
+    @Override
+    public final double product(final int idx, final int count,
+                                final double[] a, final int start) {
+        double[] values = values(idx);
+        int offset = offset(idx);
+        int dim = dim();
+        double val = 1D;
+        int c = 0;
+        if (block(idx) == block(idx + count - 1)) {
+            // fused kernel over two consecutive vectors
+            for (; c + 1 < count; c += 2) {
+                val *= Op.bilinear(a, start, values, offset + c * dim, dim);
+            }
+        }
+        for (; c < count; ++c) {
+            val *= dot(idx + c, a, start, dim);
+        }
+        return val;
+    }
+
+    @Override
+    public final double norm(final int idx) {
+        double[] values = values(idx);
+        int offset = offset(idx);
+        return Math.sqrt(Op.dot(values, offset, values, offset, dim()));
+    }
+}
@@ -1,6 +1,9 @@
 package io.github.stepping1st.hh;
 
 
+import java.util.concurrent.TimeUnit;
+
+
 /**
  * Furthest Hyperplane(FH) Query.
  */
@@ -18,7 +21,40 @@ public class FHQuery extends Query {
     public FHQuery(final double[] query, final double[][] data,
                    final int top, final int limit,
                    final int l, final Dist dist) {
-        super(query, data, top, limit, dist);
+        this(query, data, top, limit, l, dist, NO_DEADLINE);
+    }
+
+    /**
+     * @param query    query
+     * @param data     data
+     * @param top      top n
+     * @param limit    candidate limit
+     * @param l        separation threshold
+     * @param dist     distance from query and data
+     * @param deadline {@link System#nanoTime()} to stop search at
+     */
+    public FHQuery(final double[] query, final double[][] data,
+                   final int top, final int limit,
+                   final int l, final Dist dist, final long deadline) {
+        this(query, data, top, limit, l, dist, deadline, false);
+    }
+
+    /**
+     * @param query    query
+     * @param data     data
+     * @param top      top n
+     * @param limit    candidate limit
+     * @param l        separation threshold
+     * @param dist     distance from query and data
+     * @param deadline {@link System#nanoTime()} to stop search at
+     * @param stats    true to record execution statistics
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public FHQuery(final double[] query, final double[][] data,
+                   final int top, final int limit,
+                   final int l, final Dist dist, final long deadline,
+                   final boolean stats) {
+        super(query, data, top, limit, dist, 0, deadline, stats);
         this.l = l;
     }
 
@@ -31,6 +67,19 @@ public class FHQuery extends Query {
 
     @Override
     public final FHQuery copy(final Dist dist) {
-        return new FHQuery(query(), data(), top(), limit(), l, dist);
+        return new FHQuery(query(), data(), top(), limit(), l, dist,
+                deadline(), stats());
+    }
+
+    @Override
+    public final FHQuery within(final long budget, final TimeUnit unit) {
+        return new FHQuery(query(), data(), top(), limit(), l, dist(),
+                System.nanoTime() + unit.toNanos(budget), stats());
+    }
+
+    @Override
+    public final FHQuery withStats() {
+        return new FHQuery(query(), data(), top(), limit(), l, dist(),
+                deadline(), true);
     }
 }
@@ -0,0 +1,122 @@
+package io.github.stepping1st.hh;
+
+
+/**
+ * Float type vector store.
+ * <p>
+ * values are stored as float32 and accumulated as double.
+ */
+public class FloatVectorStore extends BlockVectorStore {
+    private final float[][] blocks;
+
+    /**
+     * @param n   number of vectors
+     * @param dim dimension of vector
+     */
+    public FloatVectorStore(final int n, final int dim) {
+        super(n, dim);
+        this.blocks = new float[blocks()][];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new float[blocksize(i)];
+        }
+    }
+
+    /**
+     * @param data input data
+     */
+    public FloatVectorStore(final double[][] data) {
+        this(data.length, dim(data));
+        for (int i = 0; i < data.length; i++) {
+            assert data[i].length == dim();
+            float[] values = values(i);
+            int offset = offset(i);
+            for (int d = 0; d < data[i].length; d++) {
+                values[offset + d] = (float) data[i][d];
+            }
+        }
+    }
+
+    /**
+     * @param idx index of vector
+     * @return buffer holding the vector
+     */
+    public final float[] values(final int idx) {
+        return blocks[block(idx)];
+    }
+
+    @Override
+    public final Precision precision() {
+        return Precision.FLOAT;
+    }
+
+    @Override
+    public final double get(final int idx, final int d) {
+        return values(idx)[offset(idx) + d];
+    }
+
+    @Override
+    public final void set(final int idx, final int d, final double value) {
+        values(idx)[offset(idx) + d] = (float) value;
+    }
+
+    /**
+     * @param idx   index of vector
+     * @param value vector
+     */
+    public final void set(final int idx, final float[] value) {
+        assert value.length == dim();
+        System.arraycopy(value, 0, values(idx), offset(idx), dim());
+    }
+
+    @Override
+    public final void copy(final int idx, final double[] dest, final int pos) {
+        float[] values = values(idx);
+        int offset = offset(idx);
+        for (int d = 0; d < dim(); d++) {
+            dest[pos + d] = values[offset + d];
+        }
+    }
+
+    @Override
+    public final double dot(final int idx, final double[] a) {
+        return Op.dot(a, 0, values(idx), offset(idx), dim());
+    }
+
+    @Override
+    public final double dot(final int idx, final double[] a,
+                            final int start, final int len) {
+        return Op.dot(a, start, values(idx), offset(idx), len);
+    }
+
+    @Override
+    public final double product(final int idx, final int count,
+                                final double[] a, final int start) {
+        float[] values = values(idx);
+        int offset = offset(idx);
+        int dim = dim();
+        double val = 1D;
+        int c = 0;
+        if (block(idx) == block(idx + count - 1)) {
+            // fused kernel over two consecutive vectors
+            for (; c + 1 < count; c += 2) {
+                val *= Op.bilinear(a, start, values, offset + c * dim, dim);
+            }
+        }
+        for (; c < count; ++c) {
+            val *= dot(idx + c, a, start, dim);
+        }
+        return val;
+    }
+
+    @Override
+    public final double norm(final int idx) {
+        float[] values = values(idx);
+        int offset = offset(idx);
+        double v = 0;
+        for (int d = 0; d < dim(); d++) {
+            double x = values[offset + d];
+            v += x * x;
+        }
+        return Math.sqrt(v);
+    }
+}
@@ -6,11 +6,15 @@ import it.unimi.dsi.fastutil.ints.IntList;
 import it.unimi.dsi.fastutil.ints.IntLists;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.longs.Long2IntMap;
-import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.IntConsumer;
 
 import org.slf4j.Logger;
@@ -19,21 +23,66 @@ import org.slf4j.LoggerFactory;
 
 /**
  * HashBucket for data.
+ * <p>
+ * buckets are hash maps of lists while building, and {@link #freeze()}
+ * packs every table into a compressed sparse row layout for search.
+ * a frozen bucket is written to a snapshot and read back from its mapping.
+ * <p>
+ * keys inserted after freezing are buffered until hash_bucket.buffer_size
+ * of them are packed into a delta run, and more than hash_bucket.max_runs
+ * runs are merged into one. runs and buffer are searched after the frozen
+ * tables in insert order. removed keys are tombstones skipped by search.
+ * {@link #compact()} merges both into the frozen tables, and
+ * {@link #compaction()} does it on another thread.
+ * <p>
+ * search of a frozen bucket reads an immutable state which updates
+ * replace, so it takes no lock and runs concurrently with updates and
+ * compaction. updates are serialized on the bucket. a bucket is not
+ * searched while building.
  */
 public class HashBucket implements Serializable {
     private static final Logger LOGGER = LoggerFactory.getLogger(
             HashBucket.class.getName()
     );
+    private static final int BUFFER_SIZE = Math.max(1, Integer.parseInt(
+            System.getenv().getOrDefault("hash_bucket.buffer_size", "256")
+    ));
+    private static final int MAX_RUNS = Integer.parseInt(
+            System.getenv().getOrDefault("hash_bucket.max_runs", "8")
+    );
+    private static final Frozen[] NO_RUNS = new Frozen[0];
     private final int l;
     private final int mask;
-    private final Long2ObjectMap<IntList>[] buckets;
-    private final Random rd = new Random();
+    private Long2ObjectMap<IntList>[] buckets;
+    /**
+     * tables searched, the frozen tables are null while building.
+     */
+    private transient volatile State state;
+    /**
+     * removed keys, grown on remove and shared with the state.
+     */
+    private transient AtomicLongArray removed;
+    private transient boolean compacting;
+    /**
+     * shuffle stream of each table, so that tables can be built
+     * independently with the same result.
+     */
+    private final Random[] rds;
 
     /**
      * @param n number of data
      * @param l tables
      */
     public HashBucket(final int n, final int l) {
+        this(n, l, new Random().nextLong());
+    }
+
+    /**
+     * @param n    number of data
+     * @param l    tables
+     * @param seed seed of bucket shuffle
+     */
+    public HashBucket(final int n, final int l, final long seed) {
         this.l = l;
         int max = 1;
         while (max < n) {
@@ -42,9 +91,33 @@ public class HashBucket implements Serializable {
         --max;
         this.mask = max;
         this.buckets = new Long2ObjectMap[l];
+        this.rds = new Random[l];
+        Random seeds = new Random(seed);
         for (int i = 0; i < l; i++) {
             buckets[i] = new Long2ObjectOpenHashMap<>();
+            rds[i] = new Random(seeds.nextLong());
         }
+        this.removed = new AtomicLongArray(0);
+        this.state = new State(null, NO_RUNS, null, 0, 0, 0, removed);
+    }
+
+    /**
+     * frozen bucket read from snapshot.
+     */
+    private HashBucket(final int l, final int mask, final Frozen main) {
+        this.l = l;
+        this.mask = mask;
+        this.rds = new Random[0];
+        this.removed = new AtomicLongArray(0);
+        this.state = new State(main, NO_RUNS, new Buffer(l), 0, 0, 0,
+                removed);
+    }
+
+    /**
+     * @return number of tables
+     */
+    public final int tables() {
+        return l;
     }
 
     /**
@@ -54,19 +127,112 @@ public class HashBucket implements Serializable {
      * @param dcode signature of data
      */
     public final void insert(final int key, final int[] dcode) {
+        if (buckets == null) {
+            append(key, dcode);
+            return;
+        }
         for (int j = 0; j < l; ++j) {
-            long hashcode32 = dcode[j] & mask;
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("insert j={}, code={}, mask={}",
-                        j, hashcode32, mask);
-            }
-            IntList found = getOrInsert(buckets[j], hashcode32);
-            found.add(key);
-            if (1 < found.size()) {
-                int n = rd.nextInt(found.size());
-                swap(found, found, n, found.size() - 1);
+            insert(j, key, dcode[j]);
+        }
+    }
+
+    /**
+     * insert key into a single table while building.
+     * <p>
+     * tables are independent of each other, so different tables can be
+     * inserted from different threads. keys of a table must be inserted
+     * in the same order to get the same buckets.
+     *
+     * @param j    index of table
+     * @param key  index of data
+     * @param code signature of data in the table
+     * @throws IllegalStateException if bucket is frozen
+     */
+    public final void insert(final int j, final int key, final int code) {
+        if (buckets == null) {
+            throw new IllegalStateException(
+                    "frozen bucket inserts every table of a key");
+        }
+        long hashcode32 = code & mask;
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("insert j={}, code={}, mask={}",
+                    j, hashcode32, mask);
+        }
+        IntList found = getOrInsert(buckets[j], hashcode32);
+        found.add(key);
+        if (1 < found.size()) {
+            int n = rds[j].nextInt(found.size());
+            swap(found, found, n, found.size() - 1);
+        }
+    }
+
+    /**
+     * buffer key inserted after freezing, in insert order.
+     */
+    private synchronized void append(final int key, final int[] dcode) {
+        State current = state;
+        Buffer buffer = current.buffer;
+        int at = current.buffered;
+        // slot is beyond every published state, so no search reads it
+        buffer.keys[at] = key;
+        for (int j = 0; j < l; ++j) {
+            buffer.codes[j][at] = dcode[j] & mask;
+        }
+        State next = new State(current.main, current.runs, buffer, at + 1,
+                current.inserted + 1, current.tombstones, removed);
+        if (BUFFER_SIZE <= next.buffered) {
+            next = flush(next);
+        }
+        state = next;
+    }
+
+    /**
+     * @return state of buffer packed into a run
+     */
+    private State flush(final State current) {
+        Frozen[] runs = Arrays.copyOf(current.runs, current.runs.length + 1);
+        runs[current.runs.length] = run(current.buffer, current.buffered);
+        if (MAX_RUNS < runs.length && !compacting) {
+            runs = new Frozen[]{merge(runs)};
+        }
+        return new State(current.main, runs, new Buffer(l), 0,
+                current.inserted, current.tombstones, removed);
+    }
+
+    /**
+     * remove key from search, key is dropped from tables on compaction.
+     *
+     * @param key index of data
+     * @return false if key is already removed
+     */
+    public final synchronized boolean remove(final int key) {
+        if (removed(removed, key)) {
+            return false;
+        }
+        int word = key / Long.SIZE;
+        if (removed.length() <= word) {
+            AtomicLongArray grown = new AtomicLongArray(
+                    Math.max(word + 1, removed.length() << 1));
+            for (int i = 0; i < removed.length(); ++i) {
+                grown.set(i, removed.get(i));
             }
+            removed = grown;
         }
+        removed.set(word, removed.get(word) | (1L << (key % Long.SIZE)));
+        State current = state;
+        state = new State(current.main, current.runs, current.buffer,
+                current.buffered, current.inserted, current.tombstones + 1,
+                removed);
+        return true;
+    }
+
+    /**
+     * @return number of keys inserted after freezing or removed, which
+     * are not compacted yet
+     */
+    public final int pending() {
+        State current = state;
+        return current.inserted + current.tombstones;
     }
 
     /**
@@ -75,32 +241,463 @@ public class HashBucket implements Serializable {
      * @param qcode    signature of data
      * @param limit    candidate limit
      * @param consumer consumer for search data
-     * @return index and count of search data
+     * @return visit count of search data, valid until the next search on
+     * the same thread
+     */
+    public final Visited search(final int[] qcode,
+                                final int limit,
+                                final IntConsumer consumer) {
+        return search(qcode, limit, Deadline.NONE, consumer);
+    }
+
+    /**
+     * search data from signature until deadline.
+     *
+     * @param qcode    signature of data
+     * @param limit    candidate limit
+     * @param deadline deadline of search
+     * @param consumer consumer for search data
+     * @return visit count of search data, valid until the next search on
+     * the same thread
      */
-    public final Long2IntMap search(final int[] qcode,
-                                    final int limit,
-                                    final IntConsumer consumer) {
-        Long2IntMap candidate = new Long2IntOpenHashMap();
-        candidate.defaultReturnValue(0);
+    public final Visited search(final int[] qcode,
+                                final int limit,
+                                final Deadline deadline,
+                                final IntConsumer consumer) {
+        State current = state;
+        Visited candidate = Visited.local();
         for (int j = 0; j < l; ++j) {
-            int hashcode32 = qcode[j] & mask;
+            if (probe(current, j, qcode[j], candidate, limit, deadline,
+                    consumer)) {
+                break;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * search data from probes of (table, signature) in order.
+     *
+     * @param tables   table of each probe
+     * @param codes    signature of each probe
+     * @param count    number of probes
+     * @param limit    candidate limit
+     * @param consumer consumer for search data
+     * @return visit count of search data, valid until the next search on
+     * the same thread
+     */
+    public final Visited search(final int[] tables, final int[] codes,
+                                final int count, final int limit,
+                                final IntConsumer consumer) {
+        return search(tables, codes, count, limit, Deadline.NONE, consumer);
+    }
+
+    /**
+     * search data from probes of (table, signature) in order until
+     * deadline.
+     *
+     * @param tables   table of each probe
+     * @param codes    signature of each probe
+     * @param count    number of probes
+     * @param limit    candidate limit
+     * @param deadline deadline of search
+     * @param consumer consumer for search data
+     * @return visit count of search data, valid until the next search on
+     * the same thread
+     */
+    public final Visited search(final int[] tables, final int[] codes,
+                                final int count, final int limit,
+                                final Deadline deadline,
+                                final IntConsumer consumer) {
+        State current = state;
+        Visited candidate = Visited.local();
+        for (int i = 0; i < count; ++i) {
+            if (probe(current, tables[i], codes[i], candidate, limit,
+                    deadline, consumer)) {
+                break;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * @return mask of signature
+     */
+    public final int mask() {
+        return mask;
+    }
+
+    /**
+     * @return true if candidate reached the limit or deadline passed
+     */
+    private boolean probe(final State current, final int j, final int code,
+                          final Visited candidate, final int limit,
+                          final Deadline deadline,
+                          final IntConsumer consumer) {
+        candidate.probe();
+        int hashcode32 = code & mask;
+        AtomicLongArray skip = current.removed;
+        if (current.main == null) {
             IntList bucket = getOrEmpty(buckets[j], hashcode32);
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("find j={}, bucket={}, code={}, candidate={}",
                         j, bucket.size(), hashcode32, candidate.size());
             }
-            for (int key : bucket) {
-                int cnt = candidate.get(key);
-                if (cnt == 0) {
-                    consumer.accept(key);
+            for (int k = 0; k < bucket.size(); ++k) {
+                if (visit(bucket.getInt(k), candidate, limit, deadline,
+                        consumer, skip)) {
+                    return true;
                 }
-                candidate.put(key, cnt + 1);
-                if (limit <= candidate.size()) {
-                    return candidate;
+            }
+            return false;
+        }
+        if (current.main.probe(j, hashcode32, candidate, limit,
+                deadline, consumer, skip)) {
+            return true;
+        }
+        for (Frozen run : current.runs) {
+            if (run.probe(j, hashcode32, candidate, limit, deadline,
+                    consumer, skip)) {
+                return true;
+            }
+        }
+        int[] keys = current.buffer.keys;
+        int[] buffered = current.buffer.codes[j];
+        for (int i = 0; i < current.buffered; ++i) {
+            if (buffered[i] == hashcode32 && visit(keys[i], candidate,
+                    limit, deadline, consumer, skip)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * pack buckets of every table into a compressed sparse row layout.
+     * <p>
+     * keys of a bucket keep the shuffled order of insert, so search gives
+     * the same result as before freezing. keys inserted after freezing are
+     * buffered.
+     */
+    public final synchronized void freeze() {
+        if (buckets == null) {
+            return;
+        }
+        Frozen main = new Frozen(l);
+        for (int j = 0; j < l; ++j) {
+            main.pack(j, buckets[j], mask);
+            buckets[j] = null;
+        }
+        State current = state;
+        state = new State(main, NO_RUNS, new Buffer(l), 0, 0,
+                current.tombstones, removed);
+        buckets = null;
+    }
+
+    /**
+     * size of every non empty bucket of every table, buckets of delta
+     * runs and buffer are counted on their own.
+     *
+     * @param consumer consumer of bucket size
+     */
+    public final void sizes(final IntConsumer consumer) {
+        State current = state;
+        if (current.main == null) {
+            for (int j = 0; j < l; ++j) {
+                buckets[j].values().forEach(b -> consumer.accept(b.size()));
+            }
+            return;
+        }
+        current.main.sizes(consumer);
+        for (Frozen run : current.runs) {
+            run.sizes(consumer);
+        }
+        if (0 < current.buffered) {
+            run(current.buffer, current.buffered).sizes(consumer);
+        }
+    }
+
+    /**
+     * @return true if buckets are packed
+     */
+    public final boolean frozen() {
+        return state.main != null;
+    }
+
+    /**
+     * merge keys inserted after freezing into the frozen tables and drop
+     * removed keys, bucket is frozen if not yet.
+     * <p>
+     * inserted keys follow the keys of their frozen bucket. a compaction
+     * running on another thread is waited for.
+     */
+    public final void compact() {
+        Runnable task;
+        synchronized (this) {
+            while (compacting) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
                 }
             }
+            task = compaction();
+        }
+        if (task != null) {
+            task.run();
         }
-        return candidate;
+    }
+
+    /**
+     * compaction of the current state to run on any thread.
+     * <p>
+     * the task merges the state into new frozen tables without blocking
+     * search or updates, and then replaces the frozen tables keeping
+     * updates made meanwhile. runs are not merged until then.
+     *
+     * @return compaction task, null if nothing is pending or a compaction
+     * is running
+     */
+    public final synchronized Runnable compaction() {
+        freeze();
+        State current = state;
+        if (compacting || current.inserted + current.tombstones == 0) {
+            return null;
+        }
+        if (0 < current.buffered) {
+            current = flush(current);
+            state = current;
+        }
+        State snapshot = current;
+        compacting = true;
+        return () -> {
+            Frozen main = null;
+            try {
+                main = compact(snapshot);
+            } finally {
+                install(snapshot, main);
+            }
+        };
+    }
+
+    /**
+     * replace frozen tables compacted from snapshot.
+     */
+    private synchronized void install(final State snapshot,
+                                      final Frozen main) {
+        compacting = false;
+        if (main != null) {
+            // runs flushed after snapshot follow the runs of snapshot
+            State current = state;
+            Frozen[] runs = Arrays.copyOfRange(current.runs,
+                    snapshot.runs.length, current.runs.length);
+            state = new State(main, runs, current.buffer, current.buffered,
+                    current.inserted - snapshot.inserted,
+                    current.tombstones - snapshot.tombstones, removed);
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return frozen tables merging runs and buffer of state without
+     * removed keys
+     */
+    private Frozen compact(final State current) {
+        Frozen main = new Frozen(l);
+        for (int j = 0; j < l; ++j) {
+            Long2ObjectMap<IntList> table = new Long2ObjectOpenHashMap<>();
+            current.main.append(j, table);
+            for (Frozen run : current.runs) {
+                run.append(j, table);
+            }
+            for (int i = 0; i < current.buffered; ++i) {
+                getOrInsert(table, current.buffer.codes[j][i])
+                        .add(current.buffer.keys[i]);
+            }
+            AtomicLongArray skip = current.removed;
+            if (skip != null) {
+                table.values().forEach(
+                        b -> b.removeIf((int k) -> removed(skip, k)));
+                table.values().removeIf(IntList::isEmpty);
+            }
+            main.pack(j, table, mask);
+        }
+        return main;
+    }
+
+    /**
+     * @return run of buffered keys in insert order
+     */
+    private Frozen run(final Buffer buffer, final int count) {
+        Frozen run = new Frozen(l);
+        for (int j = 0; j < l; ++j) {
+            Long2ObjectMap<IntList> table = new Long2ObjectOpenHashMap<>();
+            for (int i = 0; i < count; ++i) {
+                getOrInsert(table, buffer.codes[j][i]).add(buffer.keys[i]);
+            }
+            run.pack(j, table, mask);
+        }
+        return run;
+    }
+
+    /**
+     * @return single run of runs in order
+     */
+    private Frozen merge(final Frozen[] runs) {
+        Frozen merged = new Frozen(l);
+        for (int j = 0; j < l; ++j) {
+            Long2ObjectMap<IntList> table = new Long2ObjectOpenHashMap<>();
+            for (Frozen run : runs) {
+                run.append(j, table);
+            }
+            merged.pack(j, table, mask);
+        }
+        return merged;
+    }
+
+    /**
+     * write frozen tables to snapshot, bucket is compacted if not yet.
+     *
+     * @param out snapshot output
+     * @throws IOException if writing failed
+     */
+    public final synchronized void write(final SnapshotOutput out)
+            throws IOException {
+        compact();
+        Frozen main = state.main;
+        out.writeInt(l);
+        out.writeInt(mask);
+        for (int j = 0; j < l; ++j) {
+            if (main.codes[j] == null) {
+                out.writeInt(0);
+            } else {
+                out.writeInt(1);
+                out.writeInts(array(main.codes[j]));
+            }
+            out.writeInts(array(main.offsets[j]));
+            out.writeInts(array(main.ids[j]));
+        }
+    }
+
+    /**
+     * read frozen tables mapped from snapshot.
+     *
+     * @param in snapshot input
+     * @return frozen bucket
+     * @throws IOException if reading failed
+     */
+    public static HashBucket read(final SnapshotInput in) throws IOException {
+        int l = in.readInt();
+        int mask = in.readInt();
+        Frozen main = new Frozen(l);
+        for (int j = 0; j < l; ++j) {
+            if (in.readInt() != 0) {
+                main.codes[j] = in.readInts();
+            }
+            main.offsets[j] = in.readInts();
+            main.ids[j] = in.readInts();
+        }
+        return new HashBucket(l, mask, main);
+    }
+
+    private static int[] array(final IntBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0
+                && buffer.array().length == buffer.limit()) {
+            return buffer.array();
+        }
+        int[] values = new int[buffer.limit()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.get(i);
+        }
+        return values;
+    }
+
+    /**
+     * write frozen tables compacted from the current state, and removed
+     * keys.
+     */
+    private synchronized void writeObject(final ObjectOutputStream out)
+            throws IOException {
+        out.defaultWriteObject();
+        long[] words = new long[removed.length()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = removed.get(i);
+        }
+        out.writeObject(words);
+        State current = state;
+        if (current.main != null) {
+            Frozen main = current.main;
+            if (0 < current.inserted + current.tombstones) {
+                main = compact(current);
+            }
+            for (int j = 0; j < l; ++j) {
+                if (main.codes[j] == null) {
+                    out.writeObject(null);
+                } else {
+                    out.writeObject(array(main.codes[j]));
+                }
+                out.writeObject(array(main.offsets[j]));
+                out.writeObject(array(main.ids[j]));
+            }
+        }
+    }
+
+    private void readObject(final ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        long[] words = (long[]) in.readObject();
+        removed = new AtomicLongArray(words);
+        Frozen main = null;
+        Buffer buffer = null;
+        if (buckets == null) {
+            main = new Frozen(l);
+            for (int j = 0; j < l; ++j) {
+                int[] code = (int[]) in.readObject();
+                if (code != null) {
+                    main.codes[j] = IntBuffer.wrap(code);
+                }
+                main.offsets[j] = IntBuffer.wrap((int[]) in.readObject());
+                main.ids[j] = IntBuffer.wrap((int[]) in.readObject());
+            }
+            buffer = new Buffer(l);
+        }
+        // removed keys of frozen tables were compacted
+        int tombstones = 0;
+        if (main == null) {
+            for (long word : words) {
+                tombstones += Long.bitCount(word);
+            }
+        }
+        state = new State(main, NO_RUNS, buffer, 0, 0, tombstones, removed);
+    }
+
+    /**
+     * @param bits removed keys
+     * @param key  index of data
+     * @return true if key is removed
+     */
+    private static boolean removed(final AtomicLongArray bits,
+                                   final int key) {
+        int word = key / Long.SIZE;
+        return word < bits.length()
+                && (bits.get(word) & (1L << (key % Long.SIZE))) != 0;
+    }
+
+    /**
+     * @return true if candidate reached the limit or deadline passed
+     */
+    private static boolean visit(final int key, final Visited candidate,
+                                 final int limit, final Deadline deadline,
+                                 final IntConsumer consumer,
+                                 final AtomicLongArray skip) {
+        if (skip != null && removed(skip, key)) {
+            return deadline.check();
+        }
+        if (candidate.visit(key) == 1) {
+            consumer.accept(key);
+        }
+        return limit <= candidate.size() || deadline.check();
     }
 
     private IntList getOrEmpty(final Long2ObjectMap<IntList> bucket,
@@ -122,8 +719,8 @@ public class HashBucket implements Serializable {
         }
     }
 
-    private IntList getOrInsert(final Long2ObjectMap<IntList> map,
-                                final long idx) {
+    private static IntList getOrInsert(final Long2ObjectMap<IntList> map,
+                                       final long idx) {
         IntList found = map.get(idx);
         if (found == null) {
             found = new IntArrayList();
@@ -132,4 +729,228 @@ public class HashBucket implements Serializable {
         return found;
     }
 
+    /**
+     * Immutable tables searched, replaced as a whole by updates.
+     */
+    private static final class State {
+        /**
+         * frozen tables, null while building.
+         */
+        private final Frozen main;
+        /**
+         * delta runs in insert order.
+         */
+        private final Frozen[] runs;
+        /**
+         * keys buffered after the runs, null while building.
+         */
+        private final Buffer buffer;
+        private final int buffered;
+        /**
+         * keys of runs and buffer.
+         */
+        private final int inserted;
+        /**
+         * removed keys which are not compacted.
+         */
+        private final int tombstones;
+        /**
+         * removed keys skipped by search, null if no tombstone.
+         */
+        private final AtomicLongArray removed;
+
+        private State(final Frozen main, final Frozen[] runs,
+                      final Buffer buffer, final int buffered,
+                      final int inserted, final int tombstones,
+                      final AtomicLongArray removed) {
+            this.main = main;
+            this.runs = runs;
+            this.buffer = buffer;
+            this.buffered = buffered;
+            this.inserted = inserted;
+            this.tombstones = tombstones;
+            if (0 < tombstones) {
+                this.removed = removed;
+            } else {
+                this.removed = null;
+            }
+        }
+    }
+
+    /**
+     * Keys inserted after the runs and their masked signatures.
+     * <p>
+     * slots are written once, before the state counting them is
+     * published.
+     */
+    private static final class Buffer {
+        private final int[] keys = new int[BUFFER_SIZE];
+        /**
+         * codes[j][i] is the masked signature of keys[i] in table j.
+         */
+        private final int[][] codes;
+
+        private Buffer(final int l) {
+            this.codes = new int[l][BUFFER_SIZE];
+        }
+    }
+
+    /**
+     * Tables in compressed sparse row layout, not changed once packed.
+     */
+    private static final class Frozen {
+        /**
+         * sorted bucket codes of each table,
+         * null if offsets is indexed by code directly.
+         */
+        private final IntBuffer[] codes;
+        /**
+         * bucket i of table j is ids[j][offsets[j][i], offsets[j][i+1]).
+         */
+        private final IntBuffer[] offsets;
+        private final IntBuffer[] ids;
+
+        private Frozen(final int l) {
+            this.codes = new IntBuffer[l];
+            this.offsets = new IntBuffer[l];
+            this.ids = new IntBuffer[l];
+        }
+
+        /**
+         * @return true if candidate reached the limit or deadline passed
+         */
+        private boolean probe(final int j, final int code,
+                              final Visited candidate,
+                              final int limit, final Deadline deadline,
+                              final IntConsumer consumer,
+                              final AtomicLongArray skip) {
+            int found = find(j, code);
+            if (0 <= found) {
+                IntBuffer keys = ids[j];
+                int end = offsets[j].get(found + 1);
+                for (int k = offsets[j].get(found); k < end; ++k) {
+                    if (visit(keys.get(k), candidate, limit, deadline,
+                            consumer, skip)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param j    index of table
+         * @param code masked signature
+         * @return index of bucket, negative if not found
+         */
+        private int find(final int j, final int code) {
+            IntBuffer sorted = codes[j];
+            if (sorted == null) {
+                return code;
+            }
+            int low = 0;
+            int high = sorted.limit() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int v = sorted.get(mid);
+                if (v < code) {
+                    low = mid + 1;
+                } else if (code < v) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * append keys of every bucket of table j to buckets of table.
+         *
+         * @param j     index of table
+         * @param table buckets of table
+         */
+        private void append(final int j,
+                            final Long2ObjectMap<IntList> table) {
+            IntBuffer offset = offsets[j];
+            IntBuffer keys = ids[j];
+            for (int i = 0; i + 1 < offset.limit(); ++i) {
+                int start = offset.get(i);
+                int end = offset.get(i + 1);
+                if (start < end) {
+                    long code = i;
+                    if (codes[j] != null) {
+                        code = codes[j].get(i);
+                    }
+                    IntList bucket = getOrInsert(table, code);
+                    for (int k = start; k < end; ++k) {
+                        bucket.add(keys.get(k));
+                    }
+                }
+            }
+        }
+
+        private void sizes(final IntConsumer consumer) {
+            for (IntBuffer offset : offsets) {
+                for (int i = 0; i + 1 < offset.limit(); ++i) {
+                    int size = offset.get(i + 1) - offset.get(i);
+                    if (0 < size) {
+                        consumer.accept(size);
+                    }
+                }
+            }
+        }
+
+        /**
+         * pack buckets of table into table j.
+         *
+         * @param j     index of table
+         * @param table buckets of table
+         * @param mask  mask of signature
+         */
+        private void pack(final int j, final Long2ObjectMap<IntList> table,
+                          final int mask) {
+            long[] sorted = table.keySet().toLongArray();
+            Arrays.sort(sorted);
+            int total = 0;
+            for (IntList bucket : table.values()) {
+                total += bucket.size();
+            }
+            int[] keys = new int[total];
+            int[] offset;
+            int pos = 0;
+            if (mask + 1L <= 2L * sorted.length) {
+                // direct offset costs less than a code and an offset per
+                // bucket
+                offset = new int[mask + 2];
+                int code = 0;
+                for (long c : sorted) {
+                    IntList bucket = table.get(c);
+                    while (code <= c) {
+                        offset[code++] = pos;
+                    }
+                    bucket.getElements(0, keys, pos, bucket.size());
+                    pos += bucket.size();
+                }
+                while (code < offset.length) {
+                    offset[code++] = pos;
+                }
+                codes[j] = null;
+            } else {
+                int[] code = new int[sorted.length];
+                offset = new int[sorted.length + 1];
+                for (int i = 0; i < sorted.length; ++i) {
+                    IntList bucket = table.get(sorted[i]);
+                    code[i] = (int) sorted[i];
+                    offset[i] = pos;
+                    bucket.getElements(0, keys, pos, bucket.size());
+                    pos += bucket.size();
+                }
+                offset[sorted.length] = pos;
+                codes[j] = IntBuffer.wrap(code);
+            }
+            offsets[j] = IntBuffer.wrap(offset);
+            ids[j] = IntBuffer.wrap(keys);
+        }
+    }
 }
@@ -0,0 +1,82 @@
+package io.github.stepping1st.hh;
+
+
+/**
+ * Dot product kernel.
+ */
+interface Kernel {
+    /**
+     * name of the vectorized kernel,
+     * only available in the multi-release jar for java 17+.
+     */
+    String VECTOR_KERNEL = "io.github.stepping1st.hh.VectorKernel";
+
+    /**
+     * dot product len values of a and b from each start.
+     *
+     * @param a      input vector
+     * @param astart start of a
+     * @param b      input vector
+     * @param bstart start of b
+     * @param len    dimension
+     * @return dot product value
+     */
+    double dot(double[] a, int astart, double[] b, int bstart, int len);
+
+    /**
+     * dot product len values of a and float type b from each start.
+     *
+     * @param a      input vector
+     * @param astart start of a
+     * @param b      input vector
+     * @param bstart start of b
+     * @param len    dimension
+     * @return dot product value
+     */
+    double dot(double[] a, int astart, float[] b, int bstart, int len);
+
+    /**
+     * product of two dot products, a and b from bstart and a and b from
+     * bstart + len, in a single sweep over a.
+     *
+     * @param a      input vector
+     * @param astart start of a
+     * @param b      two consecutive input vectors
+     * @param bstart start of b
+     * @param len    dimension
+     * @return product of dot product values
+     */
+    double bilinear(double[] a, int astart, double[] b, int bstart, int len);
+
+    /**
+     * product of two dot products of a and float type b.
+     *
+     * @param a      input vector
+     * @param astart start of a
+     * @param b      two consecutive input vectors
+     * @param bstart start of b
+     * @param len    dimension
+     * @return product of dot product values
+     */
+    double bilinear(double[] a, int astart, float[] b, int bstart, int len);
+
+    /**
+     * select the vectorized kernel if it is available,
+     * otherwise scalar kernel.
+     *
+     * @param name kernel name(vector, scalar)
+     * @return kernel
+     */
+    static Kernel load(final String name) {
+        if ("vector".equals(name)) {
+            try {
+                return (Kernel) Class.forName(VECTOR_KERNEL)
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // jdk.incubator.vector module is not resolved
+                return new ScalarKernel();
+            }
+        }
+        return new ScalarKernel();
+    }
+}
@@ -0,0 +1,350 @@
+package io.github.stepping1st.hh;
+
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * Read-only vector store over memory mapped little-endian buffers.
+ * <p>
+ * vectors are laid out row by row, a row may lead with a header such as
+ * the dimension of fvecs, and a store larger than a single mapping is
+ * split into segments of whole rows. dot products are accumulated
+ * straight from the buffers in the order of the scalar kernel, without
+ * copying a row. the store is serialized as a heap store.
+ */
+public class MappedVectorStore implements VectorStore {
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+    private final transient DoubleBuffer[] doubles;
+    private final transient FloatBuffer[] floats;
+    private final Precision precision;
+    private final int n;
+    private final int dim;
+    private final int rows;
+    private final int stride;
+    private final int skip;
+
+    /**
+     * @param segments  little-endian buffers of rows
+     * @param rows      number of rows of a segment
+     * @param n         number of vectors
+     * @param dim       dimension of vector
+     * @param precision storage precision of values
+     */
+    public MappedVectorStore(final ByteBuffer[] segments, final int rows,
+                             final int n, final int dim,
+                             final Precision precision) {
+        this(segments, rows, n, dim, dim, 0, precision);
+    }
+
+    /**
+     * @param segments  little-endian buffers of rows
+     * @param rows      number of rows of a segment
+     * @param n         number of vectors
+     * @param dim       dimension of vector
+     * @param stride    number of values of a row including header
+     * @param skip      number of header values leading a row
+     * @param precision storage precision of values
+     */
+    public MappedVectorStore(final ByteBuffer[] segments, final int rows,
+                             final int n, final int dim, final int stride,
+                             final int skip, final Precision precision) {
+        assert 0 < rows || n == 0;
+        assert dim + skip <= stride;
+        this.precision = precision;
+        this.n = n;
+        this.dim = dim;
+        this.rows = rows;
+        this.stride = stride;
+        this.skip = skip;
+        if (precision == Precision.DOUBLE) {
+            this.doubles = new DoubleBuffer[segments.length];
+            this.floats = null;
+            for (int i = 0; i < segments.length; i++) {
+                doubles[i] = segments[i].duplicate()
+                        .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            }
+        } else {
+            this.doubles = null;
+            this.floats = new FloatBuffer[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                floats[i] = segments[i].duplicate()
+                        .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            }
+        }
+    }
+
+    /**
+     * map n vectors stored from position of channel.
+     *
+     * @param channel   file channel
+     * @param position  start of the first vector
+     * @param n         number of vectors
+     * @param dim       dimension of vector
+     * @param precision storage precision of values
+     * @return mapped vector store
+     * @throws IOException if mapping failed
+     */
+    public static MappedVectorStore map(final FileChannel channel,
+                                        final long position,
+                                        final int n, final int dim,
+                                        final Precision precision)
+            throws IOException {
+        return map(channel, position, n, dim, dim, 0, precision);
+    }
+
+    /**
+     * map fvecs file, every vector leads with its int dimension.
+     *
+     * @param path fvecs file
+     * @return mapped vector store
+     * @throws IOException if file is not fvecs or mapping failed
+     */
+    public static MappedVectorStore fvecs(final Path path)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return map(channel, 0, 0, 0, Precision.FLOAT);
+            }
+            ByteBuffer head = ByteBuffer.allocate(Integer.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            while (head.hasRemaining()) {
+                if (channel.read(head, head.position()) < 0) {
+                    throw new IOException("truncated fvecs: " + path);
+                }
+            }
+            int dim = head.getInt(0);
+            long rowbytes = (long) (dim + 1) * Float.BYTES;
+            if (dim <= 0 || size % rowbytes != 0
+                    || Integer.MAX_VALUE < size / rowbytes) {
+                throw new IOException("invalid fvecs: " + path);
+            }
+            return map(channel, 0, (int) (size / rowbytes), dim, dim + 1, 1,
+                    Precision.FLOAT);
+        }
+    }
+
+    /**
+     * map file of little-endian floats without header.
+     *
+     * @param path binary file
+     * @param dim  dimension of vector
+     * @return mapped vector store
+     * @throws IOException if file size is not a multiple of vector
+     */
+    public static MappedVectorStore floats(final Path path, final int dim)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            long rowbytes = (long) dim * Float.BYTES;
+            if (dim <= 0 || size % rowbytes != 0
+                    || Integer.MAX_VALUE < size / rowbytes) {
+                throw new IOException("invalid float binary: " + path);
+            }
+            return map(channel, 0, (int) (size / rowbytes), dim,
+                    Precision.FLOAT);
+        }
+    }
+
+    /**
+     * map n rows of stride values from position of channel.
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private static MappedVectorStore map(final FileChannel channel,
+                                         final long position,
+                                         final int n, final int dim,
+                                         final int stride, final int skip,
+                                         final Precision precision)
+            throws IOException {
+        long rowbytes = (long) stride * precision.bytes();
+        int rows = n;
+        if (0 < rowbytes) {
+            rows = (int) Math.min(n, MAX_SEGMENT_BYTES / rowbytes);
+        }
+        if (rows == 0 && 0 < n) {
+            throw new IOException("vector is larger than a mapping: " + dim);
+        }
+        int count = 0;
+        if (0 < n) {
+            count = (n + rows - 1) / rows;
+        }
+        ByteBuffer[] segments = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            int size = Math.min(rows, n - i * rows);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    position + i * rows * rowbytes, size * rowbytes);
+        }
+        return new MappedVectorStore(segments, rows, n, dim, stride, skip,
+                precision);
+    }
+
+    @Override
+    public final int size() {
+        return n;
+    }
+
+    @Override
+    public final int dim() {
+        return dim;
+    }
+
+    @Override
+    public final Precision precision() {
+        return precision;
+    }
+
+    @Override
+    public final double get(final int idx, final int d) {
+        int pos = start(idx) + d;
+        if (doubles != null) {
+            return doubles[idx / rows].get(pos);
+        }
+        return floats[idx / rows].get(pos);
+    }
+
+    @Override
+    public final void set(final int idx, final int d, final double value) {
+        throw new UnsupportedOperationException("read-only store");
+    }
+
+    @Override
+    public final void copy(final int idx, final double[] dest,
+                           final int pos) {
+        int start = start(idx);
+        if (doubles != null) {
+            DoubleBuffer buf = doubles[idx / rows];
+            for (int d = 0; d < dim; d++) {
+                dest[pos + d] = buf.get(start + d);
+            }
+        } else {
+            FloatBuffer buf = floats[idx / rows];
+            for (int d = 0; d < dim; d++) {
+                dest[pos + d] = buf.get(start + d);
+            }
+        }
+    }
+
+    @Override
+    public final double dot(final int idx, final double[] a) {
+        return dot(idx, a, 0, dim);
+    }
+
+    @Override
+    public final double dot(final int idx, final double[] a,
+                            final int start, final int len) {
+        int pos = start(idx);
+        double v = 0;
+        if (doubles != null) {
+            DoubleBuffer buf = doubles[idx / rows];
+            for (int i = 0; i < len; i++) {
+                v += a[start + i] * buf.get(pos + i);
+            }
+        } else {
+            FloatBuffer buf = floats[idx / rows];
+            for (int i = 0; i < len; i++) {
+                v += a[start + i] * buf.get(pos + i);
+            }
+        }
+        return v;
+    }
+
+    @Override
+    public final double product(final int idx, final int count,
+                                final double[] a, final int start) {
+        double val = 1D;
+        int c = 0;
+        // fused loop over two consecutive vectors, a is read once
+        for (; c + 1 < count; c += 2) {
+            val *= bilinear(idx + c, a, start);
+        }
+        for (; c < count; ++c) {
+            val *= dot(idx + c, a, start, dim);
+        }
+        return val;
+    }
+
+    @Override
+    public final double norm(final int idx) {
+        int pos = start(idx);
+        double v = 0;
+        if (doubles != null) {
+            DoubleBuffer buf = doubles[idx / rows];
+            for (int d = 0; d < dim; d++) {
+                double x = buf.get(pos + d);
+                v += x * x;
+            }
+        } else {
+            FloatBuffer buf = floats[idx / rows];
+            for (int d = 0; d < dim; d++) {
+                double x = buf.get(pos + d);
+                v += x * x;
+            }
+        }
+        return Math.sqrt(v);
+    }
+
+    /**
+     * @return product of dot products of a and vectors idx and idx + 1
+     */
+    private double bilinear(final int idx, final double[] a,
+                            final int start) {
+        int pos1 = start(idx);
+        int pos2 = start(idx + 1);
+        double v1 = 0;
+        double v2 = 0;
+        if (doubles != null) {
+            DoubleBuffer buf1 = doubles[idx / rows];
+            DoubleBuffer buf2 = doubles[(idx + 1) / rows];
+            for (int d = 0; d < dim; d++) {
+                double x = a[start + d];
+                v1 += x * buf1.get(pos1 + d);
+                v2 += x * buf2.get(pos2 + d);
+            }
+        } else {
+            FloatBuffer buf1 = floats[idx / rows];
+            FloatBuffer buf2 = floats[(idx + 1) / rows];
+            for (int d = 0; d < dim; d++) {
+                double x = a[start + d];
+                v1 += x * buf1.get(pos1 + d);
+                v2 += x * buf2.get(pos2 + d);
+            }
+        }
+        return v1 * v2;
+    }
+
+    /**
+     * @return position of the first value of vector in its segment
+     */
+    private int start(final int idx) {
+        return (idx % rows) * stride + skip;
+    }
+
+    /**
+     * serialize as a heap store.
+     *
+     * @return heap copy of store
+     * @throws ObjectStreamException never
+     */
+    protected final Object writeReplace() throws ObjectStreamException {
+        VectorStore store = precision.create(n, dim);
+        double[] row = new double[dim];
+        for (int i = 0; i < n; i++) {
+            copy(i, row, 0);
+            for (int d = 0; d < dim; d++) {
+                store.set(i, d, row[d]);
+            }
+        }
+        return store;
+    }
+}
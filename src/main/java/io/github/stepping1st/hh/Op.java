@@ -5,10 +5,20 @@ package io.github.stepping1st.hh;
  * Operation utils.
  */
 public final class Op {
+    private static final Kernel KERNEL = Kernel.load(
+            System.getenv().getOrDefault("op.kernel", "vector")
+    );
 
     private Op() {
     }
 
+    /**
+     * @return name of the selected dot product kernel
+     */
+    public static String kernel() {
+        return KERNEL.getClass().getSimpleName();
+    }
+
     /**
      * dot product a and b.
      *
@@ -20,11 +30,7 @@ public final class Op {
     public static double dot(final double[] a,
                              final double[] b,
                              final int dim) {
-        double v = 0;
-        for (int i = 0; i < dim; i++) {
-            v += a[i] * b[i];
-        }
-        return v;
+        return dot(a, 0, b, 0, dim);
     }
 
     /**
@@ -38,11 +44,7 @@ public final class Op {
     public static double dot(final double[] a,
                              final int start,
                              final double[] b) {
-        double v = 0;
-        for (int i = 0; i < a.length; i++) {
-            v += a[i] * b[i + start];
-        }
-        return v;
+        return dot(a, 0, b, start, a.length);
     }
 
 
@@ -55,11 +57,73 @@ public final class Op {
      */
     public static double dot(final double[] a, final double[] b) {
         assert a.length == b.length;
-        double v = 0;
-        for (int i = 0; i < a.length; i++) {
-            v += a[i] * b[i];
-        }
-        return v;
+        return dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * dot product len values of a and b from each start.
+     *
+     * @param a      input vector
+     * @param astart start of a
+     * @param b      input vector
+     * @param bstart start of b
+     * @param len    dimension
+     * @return dot product value
+     */
+    public static double dot(final double[] a, final int astart,
+                             final double[] b, final int bstart,
+                             final int len) {
+        return KERNEL.dot(a, astart, b, bstart, len);
+    }
+
+    /**
+     * dot product len values of a and float type b from each start.
+     *
+     * @param a      input vector
+     * @param astart start of a
+     * @param b      input vector
+     * @param bstart start of b
+     * @param len    dimension
+     * @return dot product value
+     */
+    public static double dot(final double[] a, final int astart,
+                             final float[] b, final int bstart,
+                             final int len) {
+        return KERNEL.dot(a, astart, b, bstart, len);
+    }
+
+    /**
+     * product of dot products of a and two consecutive vectors of b,
+     * a is read once for both.
+     *
+     * @param a      input vector
+     * @param astart start of a
+     * @param b      input vectors
+     * @param bstart start of the first vector of b
+     * @param len    dimension
+     * @return product of dot product values
+     */
+    public static double bilinear(final double[] a, final int astart,
+                                  final double[] b, final int bstart,
+                                  final int len) {
+        return KERNEL.bilinear(a, astart, b, bstart, len);
+    }
+
+    /**
+     * product of dot products of a and two consecutive vectors of float
+     * type b, a is read once for both.
+     *
+     * @param a      input vector
+     * @param astart start of a
+     * @param b      input vectors
+     * @param bstart start of the first vector of b
+     * @param len    dimension
+     * @return product of dot product values
+     */
+    public static double bilinear(final double[] a, final int astart,
+                                  final float[] b, final int bstart,
+                                  final int len) {
+        return KERNEL.bilinear(a, astart, b, bstart, len);
     }
 
     /**
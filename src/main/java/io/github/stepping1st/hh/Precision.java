@@ -0,0 +1,65 @@
+package io.github.stepping1st.hh;
+
+
+/**
+ * Storage precision of vectors.
+ */
+public enum Precision {
+    /**
+     * float64 storage.
+     */
+    DOUBLE {
+        @Override
+        public VectorStore create(final int n, final int dim) {
+            return new DoubleVectorStore(n, dim);
+        }
+
+        @Override
+        public VectorStore of(final double[][] data) {
+            return new DoubleVectorStore(data);
+        }
+
+        @Override
+        public int bytes() {
+            return Double.BYTES;
+        }
+    },
+
+    /**
+     * float32 storage with double accumulation.
+     */
+    FLOAT {
+        @Override
+        public VectorStore create(final int n, final int dim) {
+            return new FloatVectorStore(n, dim);
+        }
+
+        @Override
+        public VectorStore of(final double[][] data) {
+            return new FloatVectorStore(data);
+        }
+
+        @Override
+        public int bytes() {
+            return Float.BYTES;
+        }
+    };
+
+    /**
+     * @param n   number of vectors
+     * @param dim dimension of vector
+     * @return empty vector store
+     */
+    public abstract VectorStore create(int n, int dim);
+
+    /**
+     * @param data input data
+     * @return vector store of data
+     */
+    public abstract VectorStore of(double[][] data);
+
+    /**
+     * @return bytes of a stored value
+     */
+    public abstract int bytes();
+}
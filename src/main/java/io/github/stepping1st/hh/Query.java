@@ -2,17 +2,25 @@ package io.github.stepping1st.hh;
 
 
 import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * Parameter query for {@link io.github.stepping1st.hh.search.Search}.
  */
 public class Query implements Serializable {
+    /**
+     * deadline of query without deadline.
+     */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
     private final double[] query;
     private final double[][] data;
     private final int top;
     private final int limit;
     private final Dist dist;
+    private final int probes;
+    private final long deadline;
+    private final boolean stats;
 
     /**
      * @param query query vector
@@ -24,11 +32,61 @@ public class Query implements Serializable {
     public Query(final double[] query, final double[][] data,
                  final int top, final int limit,
                  final Dist dist) {
+        this(query, data, top, limit, dist, 0);
+    }
+
+    /**
+     * @param query  query vector
+     * @param data   data vector
+     * @param top    top n
+     * @param limit  candidate limit
+     * @param dist   distance function
+     * @param probes extra buckets to probe besides the query buckets
+     */
+    public Query(final double[] query, final double[][] data,
+                 final int top, final int limit,
+                 final Dist dist, final int probes) {
+        this(query, data, top, limit, dist, probes, NO_DEADLINE);
+    }
+
+    /**
+     * @param query    query vector
+     * @param data     data vector
+     * @param top      top n
+     * @param limit    candidate limit
+     * @param dist     distance function
+     * @param probes   extra buckets to probe besides the query buckets
+     * @param deadline {@link System#nanoTime()} to stop search at
+     */
+    public Query(final double[] query, final double[][] data,
+                 final int top, final int limit,
+                 final Dist dist, final int probes, final long deadline) {
+        this(query, data, top, limit, dist, probes, deadline, false);
+    }
+
+    /**
+     * @param query    query vector
+     * @param data     data vector
+     * @param top      top n
+     * @param limit    candidate limit
+     * @param dist     distance function
+     * @param probes   extra buckets to probe besides the query buckets
+     * @param deadline {@link System#nanoTime()} to stop search at
+     * @param stats    true to record execution statistics
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public Query(final double[] query, final double[][] data,
+                 final int top, final int limit,
+                 final Dist dist, final int probes, final long deadline,
+                 final boolean stats) {
         this.query = query;
         this.data = data;
         this.top = top;
         this.limit = limit;
         this.dist = dist;
+        this.probes = probes;
+        this.deadline = deadline;
+        this.stats = stats;
     }
 
     /**
@@ -39,6 +97,8 @@ public class Query implements Serializable {
     }
 
     /**
+     * searchers verify candidates against their own {@link VectorStore}.
+     *
      * @return data vector
      */
     public final double[][] data() {
@@ -66,12 +126,60 @@ public class Query implements Serializable {
         return dist;
     }
 
+    /**
+     * multi-probe budget of
+     * {@link io.github.stepping1st.hh.search.HashSearch}.
+     *
+     * @return extra buckets to probe besides the query buckets
+     */
+    public final int probes() {
+        return probes;
+    }
+
+    /**
+     * search stops at the deadline and returns the best data found so far.
+     *
+     * @return {@link System#nanoTime()} to stop search at,
+     * {@link #NO_DEADLINE} if none
+     */
+    public final long deadline() {
+        return deadline;
+    }
+
+    /**
+     * @return true if search records {@link SearchStats}
+     */
+    public final boolean stats() {
+        return stats;
+    }
+
     /**
      * @param dist distance function
      * @return copy query object
      */
     @SuppressWarnings("checkstyle:DesignForExtension")
     public Query copy(final Dist dist) {
-        return new Query(query, data, top, limit, dist);
+        return new Query(query, data, top, limit, dist, probes, deadline,
+                stats);
+    }
+
+    /**
+     * @param budget time budget of search from now
+     * @param unit   time unit of budget
+     * @return copy query object with deadline
+     */
+    @SuppressWarnings("checkstyle:DesignForExtension")
+    public Query within(final long budget, final TimeUnit unit) {
+        return new Query(query, data, top, limit, dist, probes,
+                System.nanoTime() + unit.toNanos(budget), stats);
+    }
+
+    /**
+     * @return copy query object recording execution statistics
+     */
+    @SuppressWarnings("checkstyle:DesignForExtension")
+    public Query withStats() {
+        return new Query(query, data, top, limit, dist, probes, deadline,
+                true);
     }
 }
@@ -28,7 +28,7 @@ public class RQALSH implements Serializable {
     private final int dim;
     private final int m;
     private final int[] index;
-    private final double[] a;
+    private final VectorStore a;
     private final IdxVal[] tables;
 
     /**
@@ -43,15 +43,60 @@ public class RQALSH implements Serializable {
     public RQALSH(final int n, final int dim, final int m,
                   final int[] index, final double[] norm,
                   final IdxVal[][] data, final RandomData rd) {
+        this(n, dim, m, index, norm, data, rd, Precision.DOUBLE);
+    }
+
+    /**
+     * @param n         number of data
+     * @param dim       dimension of data
+     * @param m         number of hash tables
+     * @param index     index of data
+     * @param norm      norm of data dim
+     * @param data      index and weight of data
+     * @param rd        random data
+     * @param precision storage precision of hash functions
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public RQALSH(final int n, final int dim, final int m,
+                  final int[] index, final double[] norm,
+                  final IdxVal[][] data, final RandomData rd,
+                  final Precision precision) {
+        this(n, dim, m, index, norm, data, rd, precision, false);
+    }
+
+    /**
+     * hash tables of rows whose norm and data are given by row.
+     *
+     * @param dim       dimension of data
+     * @param m         number of hash tables
+     * @param index     index of data of each row
+     * @param norm      norm of data dim of each row
+     * @param data      index and weight of data of each row
+     * @param rd        random data
+     * @param precision storage precision of hash functions
+     */
+    public RQALSH(final int dim, final int m, final int[] index,
+                  final double[] norm, final IdxVal[][] data,
+                  final RandomData rd, final Precision precision) {
+        this(index.length, dim, m, index, norm, data, rd, precision, true);
+    }
+
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private RQALSH(final int n, final int dim, final int m,
+                   final int[] index, final double[] norm,
+                   final IdxVal[][] data, final RandomData rd,
+                   final Precision precision, final boolean byrow) {
         this.n = n;
         this.dim = dim;
         this.m = m;
         this.index = index;
 
         // generate hash functions
-        a = new double[m * dim];
-        for (int i = 0; i < m * dim; ++i) {
-            a[i] = rd.nextGaussian(0.0f, 1.0D);
+        a = precision.create(m, dim);
+        for (int i = 0; i < m; ++i) {
+            for (int j = 0; j < dim; ++j) {
+                a.set(i, j, rd.nextGaussian(0.0f, 1.0D));
+            }
         }
 
         // allocate space for tables
@@ -60,6 +105,9 @@ public class RQALSH implements Serializable {
         for (int i = 0; i < n; ++i) {
             // calc the hash values of P*f(o)
             int idx = index[i];
+            if (byrow) {
+                idx = i;
+            }
             for (int j = 0; j < m; ++j) {
                 IdxVal[] w = data[idx];
                 double val = calcHashValue(w.length, j, norm[idx], w);
@@ -75,6 +123,13 @@ public class RQALSH implements Serializable {
         }
     }
 
+    /**
+     * @return number of data
+     */
+    public final int size() {
+        return n;
+    }
+
     /**
      * furthest neighbor search.
      *
@@ -91,6 +146,45 @@ public class RQALSH implements Serializable {
     @SuppressWarnings("checkstyle:ParameterName")
     public final IntList fns(final int l, final int limit, final double R,
                              final int sampledim, final IdxVal[] query) {
+        return fns(l, limit, R, sampledim, query, Deadline.NONE);
+    }
+
+    /**
+     * furthest neighbor search until deadline.
+     *
+     * @param l         separation threshold
+     * @param limit     candidates limit
+     * @param R         limited search range.
+     * @param sampledim sample dimension
+     * @param query     query object
+     * @param deadline  deadline of search
+     * @return candidates found until deadline
+     */
+    @SuppressWarnings("checkstyle:ParameterName")
+    public final IntList fns(final int l, final int limit, final double R,
+                             final int sampledim, final IdxVal[] query,
+                             final Deadline deadline) {
+        return fns(l, limit, R, sampledim, query, deadline,
+                SearchStats.NONE);
+    }
+
+    /**
+     * furthest neighbor search until deadline, recording statistics.
+     *
+     * @param l         separation threshold
+     * @param limit     candidates limit
+     * @param R         limited search range.
+     * @param sampledim sample dimension
+     * @param query     query object
+     * @param deadline  deadline of search
+     * @param stats     execution statistics of search
+     * @return candidates found until deadline
+     */
+    @SuppressWarnings("checkstyle:ParameterName")
+    public final IntList fns(final int l, final int limit, final double R,
+                             final int sampledim, final IdxVal[] query,
+                             final Deadline deadline,
+                             final SearchStats stats) {
         // simply check all data if #candidates is equal to the cardinality
         if (n <= limit) {
             IntList cands = new IntArrayList();
@@ -101,26 +195,32 @@ public class RQALSH implements Serializable {
                     cands.add(i);
                 }
             }
+            stats.generated(n, n);
             return cands;
         }
 
         // dynamic separation counting
         SearchPosition pos = getSearchPosition(sampledim, query);
-        return dynamicSeparationCounting(l, limit, R, pos);
+        return dynamicSeparationCounting(l, limit, R, pos, deadline, stats);
     }
 
     /**
      * dynamic separation counting.
      *
-     * @param l     separation threshold
-     * @param limit candidates limit
-     * @param R     limited search range
+     * @param l        separation threshold
+     * @param limit    candidates limit
+     * @param R        limited search range
+     * @param position hash position param
+     * @param deadline deadline of search
+     * @param stats    execution statistics of search
      */
     @SuppressWarnings("checkstyle:ParameterName")
     private IntList dynamicSeparationCounting(final int l,
                                               final int limit,
                                               final double R,
-                                              final SearchPosition position) {
+                                              final SearchPosition position,
+                                              final Deadline deadline,
+                                              final SearchStats stats) {
         // grid width
         double w = 1.0D;
         // search radius
@@ -137,9 +237,11 @@ public class RQALSH implements Serializable {
             param.bucket = 0;
             Arrays.fill(param.bucketflag, true);
 
-            fnSearch(position, param, l, limit, range);
+            fnSearch(position, param, l, limit, range, deadline);
+            stats.round();
             // step 3: stop condition
-            if (m <= param.range || limit <= param.cands.size()) {
+            if (m <= param.range || limit <= param.cands.size()
+                    || deadline.expired()) {
                 break;
             }
             // step 4: update radius
@@ -147,21 +249,27 @@ public class RQALSH implements Serializable {
             param.width = param.radius * w / 2.0D;
         }
 
+        stats.generated(param.freq.visits(), param.cands.size());
         return param.cands;
     }
 
     /**
      * step 2: (R,c)-FN search.
      *
-     * @param pos   hash position param
-     * @param param furthest nearest search param
-     * @param l     separation threshold
-     * @param limit candidates limit
-     * @param range search range
+     * @param pos      hash position param
+     * @param param    furthest nearest search param
+     * @param l        separation threshold
+     * @param limit    candidates limit
+     * @param range    search range
+     * @param deadline deadline of search
      */
     private void fnSearch(final SearchPosition pos, final CountParam param,
-                          final int l, final int limit, final double range) {
+                          final int l, final int limit, final double range,
+                          final Deadline deadline) {
         for (int num = 0; param.more(limit); num++) {
+            if (deadline.check()) {
+                return;
+            }
             if (MAX_SEARCH_SIZE < num) {
                 LOGGER.warn("MAX_SEARCH{} < limit{}", MAX_SEARCH_SIZE, num);
                 param.more = false;
@@ -193,7 +301,7 @@ public class RQALSH implements Serializable {
                 }
 
                 int id = tables[start + lpos].idx();
-                if (++param.freq[id] == l) {
+                if (param.freq.visit(id) == l) {
                     if (index != null && -1 < index[id]) {
                         param.cands.add(index[id]);
                     } else {
@@ -219,7 +327,7 @@ public class RQALSH implements Serializable {
                 }
 
                 int id = tables[start + rpos].idx();
-                if (++param.freq[id] == l) {
+                if (param.freq.visit(id) == l) {
                     if (index != null && -1 < index[id]) {
                         param.cands.add(index[id]);
                     } else {
@@ -260,7 +368,7 @@ public class RQALSH implements Serializable {
      * @return hash value
      */
     private double calcHashValue(final int tid, final double[] data) {
-        return Op.dot(data, a, tid * dim);
+        return a.dot(tid, data);
     }
 
     /**
@@ -274,13 +382,12 @@ public class RQALSH implements Serializable {
      */
     private double calcHashValue(final int d, final int tid,
                                  final double last, final IdxVal[] data) {
-        int start = tid * dim;
         double val = 0.0D;
         for (int i = 0; i < d; ++i) {
             int idx = data[i].idx();
-            val += a[start + idx] * data[i].value();
+            val += a.get(tid, idx) * data[i].value();
         }
-        return val + a[start + dim - 1] * last;
+        return val + a.get(tid, dim - 1) * last;
     }
 
     /**
@@ -293,11 +400,10 @@ public class RQALSH implements Serializable {
      */
     private double calcHashValue(final int d, final int tid,
                                  final IdxVal[] data) {
-        int start = tid * dim;
         double val = 0.0D;
         for (int i = 0; i < d; ++i) {
             int idx = data[i].idx();
-            val += a[start + idx] * data[i].value();
+            val += a.get(tid, idx) * data[i].value();
         }
         return val;
     }
@@ -397,7 +503,7 @@ public class RQALSH implements Serializable {
         /**
          * separation frequency for n data points.
          */
-        private final int[] freq;
+        private final Visited freq;
 
         /**
          * range flag for m hash tables.
@@ -443,7 +549,7 @@ public class RQALSH implements Serializable {
          */
         private CountParam(final int n, final int m,
                            final double radius, final double width) {
-            freq = new int[n];
+            freq = Visited.local();
             this.m = m;
             rangeflag = new boolean[m];
             bucketflag = new boolean[m];
@@ -1,7 +1,9 @@
 package io.github.stepping1st.hh;
 
 
+import org.apache.commons.math.random.JDKRandomGenerator;
 import org.apache.commons.math.random.RandomData;
+import org.apache.commons.math.random.RandomDataImpl;
 
 import java.io.Serializable;
 import java.util.Arrays;
@@ -9,8 +11,19 @@ import java.util.Arrays;
 
 /**
  * Random Sampler.
+ * <p>
+ * {@link #sampling(double[])} draws from the shared random data and is
+ * not thread-safe. {@link #query(double[])} draws from a random stream
+ * derived from the query itself, so it is thread-safe and a query is
+ * always sampled in the same way.
  */
 public class RandSampler implements Serializable {
+    private static final long PRIME = 1099511628211L;
+    private static final long MIX1 = 0xbf58476d1ce4e5b9L;
+    private static final long MIX2 = 0x94d049bb133111ebL;
+    private static final int MIX_SHIFT1 = 30;
+    private static final int MIX_SHIFT2 = 27;
+    private static final int MIX_SHIFT3 = 31;
     private final int dim;
     private final int afterdim;
     private final int sampledim;
@@ -35,6 +48,30 @@ public class RandSampler implements Serializable {
      * @return sampled vector
      */
     public final IdxVal[] sampling(final double[] data) {
+        return sampling(data, rd);
+    }
+
+    /**
+     * sampling query vector from a random stream derived from query.
+     *
+     * @param query query vector
+     * @return sampled vector
+     */
+    public final IdxVal[] query(final double[] query) {
+        JDKRandomGenerator generator = new JDKRandomGenerator();
+        generator.setSeed(seed(query));
+        return sampling(query, new RandomDataImpl(generator));
+    }
+
+    /**
+     * sampling vector from input.
+     *
+     * @param data   input vector
+     * @param random random data to sample
+     * @return sampled vector
+     */
+    public final IdxVal[] sampling(final double[] data,
+                                   final RandomData random) {
         IdxVal[] sample = new IdxVal[sampledim];
         // 1: calc probability vector and the l2-norm-square of data
         double[] prob = probabilityVector(dim, data);
@@ -53,8 +90,8 @@ public class RandSampler implements Serializable {
 
         // 2.2: consider the combination of the left coordinates
         for (int i = 1; i < sampledim; ++i) {
-            int idx = searchIdxFrom(dim - 1, prob);
-            int idy = searchIdxFrom(dim, prob);
+            int idx = searchIdxFrom(dim - 1, prob, random);
+            int idy = searchIdxFrom(dim, prob, random);
             if (idx > idy) {
                 int tmp = idx;
                 idx = idy;
@@ -101,13 +138,15 @@ public class RandSampler implements Serializable {
     /**
      * binary search index based on prob vector.
      *
-     * @param prob probability vector
+     * @param prob   probability vector
+     * @param random random data to sample
      * @return idx
      */
-    private int searchIdxFrom(final int d, final double[] prob) {
+    private int searchIdxFrom(final int d, final double[] prob,
+                              final RandomData random) {
         double end = prob[d - 1];
         assert 0 < end : String.format("must 0 < sigma(%f)", end);
-        double rnd = rd.nextGaussian(0.0f, end);
+        double rnd = random.nextGaussian(0.0f, end);
         int idx = Arrays.binarySearch(prob, 0, d, rnd);
         if (0 <= idx) {
             return idx;
@@ -115,4 +154,20 @@ public class RandSampler implements Serializable {
             return Math.max(0, -(idx + 2));
         }
     }
+
+    /**
+     * 64-bit hash of vector with splitmix64 finalizer.
+     *
+     * @param data input vector
+     * @return seed of random stream
+     */
+    private static long seed(final double[] data) {
+        long h = data.length;
+        for (double v : data) {
+            h = h * PRIME + Double.doubleToLongBits(v);
+        }
+        h = (h ^ (h >>> MIX_SHIFT1)) * MIX1;
+        h = (h ^ (h >>> MIX_SHIFT2)) * MIX2;
+        return h ^ (h >>> MIX_SHIFT3);
+    }
 }
@@ -0,0 +1,58 @@
+package io.github.stepping1st.hh;
+
+
+/**
+ * Scalar dot product kernel.
+ */
+final class ScalarKernel implements Kernel {
+
+    @Override
+    public double dot(final double[] a, final int astart,
+                      final double[] b, final int bstart,
+                      final int len) {
+        double v = 0;
+        for (int i = 0; i < len; i++) {
+            v += a[astart + i] * b[bstart + i];
+        }
+        return v;
+    }
+
+    @Override
+    public double dot(final double[] a, final int astart,
+                      final float[] b, final int bstart,
+                      final int len) {
+        double v = 0;
+        for (int i = 0; i < len; i++) {
+            v += a[astart + i] * b[bstart + i];
+        }
+        return v;
+    }
+
+    @Override
+    public double bilinear(final double[] a, final int astart,
+                           final double[] b, final int bstart,
+                           final int len) {
+        double v1 = 0;
+        double v2 = 0;
+        for (int i = 0; i < len; i++) {
+            double x = a[astart + i];
+            v1 += x * b[bstart + i];
+            v2 += x * b[bstart + len + i];
+        }
+        return v1 * v2;
+    }
+
+    @Override
+    public double bilinear(final double[] a, final int astart,
+                           final float[] b, final int bstart,
+                           final int len) {
+        double v1 = 0;
+        double v2 = 0;
+        for (int i = 0; i < len; i++) {
+            double x = a[astart + i];
+            v1 += x * b[bstart + i];
+            v2 += x * b[bstart + len + i];
+        }
+        return v1 * v2;
+    }
+}
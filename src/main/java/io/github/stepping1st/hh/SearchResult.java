@@ -0,0 +1,52 @@
+package io.github.stepping1st.hh;
+
+
+import java.util.ArrayList;
+
+
+/**
+ * Found data from the best.
+ * <p>
+ * a search cut short by its deadline returns the best data found so far
+ * and is marked as expired. execution statistics are recorded if the
+ * query asked for them.
+ */
+public class SearchResult extends ArrayList<IdxVal> {
+    private final boolean expired;
+    private final SearchStats stats;
+
+    /**
+     * @param capacity initial capacity
+     * @param expired  true if search was cut short by deadline
+     */
+    public SearchResult(final int capacity, final boolean expired) {
+        this(capacity, expired, SearchStats.NONE);
+    }
+
+    /**
+     * @param capacity initial capacity
+     * @param expired  true if search was cut short by deadline
+     * @param stats    execution statistics of search
+     */
+    public SearchResult(final int capacity, final boolean expired,
+                        final SearchStats stats) {
+        super(capacity);
+        this.expired = expired;
+        this.stats = stats;
+    }
+
+    /**
+     * @return true if search was cut short by deadline
+     */
+    public final boolean expired() {
+        return expired;
+    }
+
+    /**
+     * @return execution statistics, {@link SearchStats#NONE} if the query
+     * did not ask for them
+     */
+    public final SearchStats stats() {
+        return stats;
+    }
+}
@@ -0,0 +1,211 @@
+package io.github.stepping1st.hh;
+
+
+/**
+ * Execution statistics of a single search.
+ * <p>
+ * counters and phase timings are recorded only if the query asked for
+ * them, otherwise every call is a branch on a final field and the clock
+ * is never read. candidate generation takes the time of search left over
+ * from hashing and verification, since searchers verify a candidate as
+ * soon as it is generated. an instance is owned by a single search.
+ */
+public final class SearchStats {
+    /**
+     * statistics recording nothing.
+     */
+    public static final SearchStats NONE = new SearchStats(false);
+    private final boolean enabled;
+    private long probes = 0L;
+    private long candidates = 0L;
+    private long duplicates = 0L;
+    private long verified = 0L;
+    private long rounds = 0L;
+    private long hashnanos = 0L;
+    private long verifynanos = 0L;
+    private long totalnanos = 0L;
+
+    private SearchStats(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param query query of search
+     * @return statistics of query
+     */
+    public static SearchStats of(final Query query) {
+        if (!query.stats()) {
+            return NONE;
+        }
+        return new SearchStats(true);
+    }
+
+    /**
+     * @return true if statistics are recorded
+     */
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} if recorded, otherwise 0
+     */
+    public long clock() {
+        if (!enabled) {
+            return 0L;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * record hashing of query started at start.
+     *
+     * @param start clock at start of hashing
+     * @return clock at end of hashing
+     */
+    public long hashed(final long start) {
+        if (!enabled) {
+            return 0L;
+        }
+        long now = System.nanoTime();
+        hashnanos += now - start;
+        return now;
+    }
+
+    /**
+     * record verification of count candidates started at start.
+     *
+     * @param start clock at start of verification
+     * @param count number of verified candidates
+     */
+    public void verified(final long start, final int count) {
+        if (enabled) {
+            verifynanos += System.nanoTime() - start;
+            verified += count;
+        }
+    }
+
+    /**
+     * record candidates generated from buckets.
+     *
+     * @param visited visit counter of the candidates
+     */
+    public void generated(final Visited visited) {
+        if (enabled) {
+            probes += visited.probes();
+            candidates += visited.visits();
+            duplicates += visited.visits() - visited.size();
+        }
+    }
+
+    /**
+     * record candidates generated from scanned entries.
+     *
+     * @param scanned number of scanned entries
+     * @param found   number of candidates
+     */
+    public void generated(final long scanned, final long found) {
+        if (enabled) {
+            probes += scanned;
+            candidates += found;
+        }
+    }
+
+    /**
+     * record a round of search radius.
+     */
+    public void round() {
+        if (enabled) {
+            ++rounds;
+        }
+    }
+
+    /**
+     * record end of search started at start.
+     *
+     * @param start clock at start of search
+     */
+    public void finish(final long start) {
+        if (enabled) {
+            totalnanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * @return buckets probed, sorted locations or hash entries scanned
+     */
+    public long probes() {
+        return probes;
+    }
+
+    /**
+     * @return candidates generated including duplicates
+     */
+    public long candidates() {
+        return candidates;
+    }
+
+    /**
+     * @return duplicate candidates dropped
+     */
+    public long duplicates() {
+        return duplicates;
+    }
+
+    /**
+     * @return candidates verified by distance
+     */
+    public long verified() {
+        return verified;
+    }
+
+    /**
+     * @return rounds of search radius
+     */
+    public long rounds() {
+        return rounds;
+    }
+
+    /**
+     * @return nanoseconds of hashing query
+     */
+    public long hashNanos() {
+        return hashnanos;
+    }
+
+    /**
+     * @return nanoseconds of generating candidates
+     */
+    public long candidateNanos() {
+        return Math.max(0L, totalnanos - hashnanos - verifynanos);
+    }
+
+    /**
+     * @return nanoseconds of verifying candidates
+     */
+    public long verifyNanos() {
+        return verifynanos;
+    }
+
+    /**
+     * @return nanoseconds of search
+     */
+    public long totalNanos() {
+        return totalnanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchStats{"
+                + "probes=" + probes
+                + ", candidates=" + candidates
+                + ", duplicates=" + duplicates
+                + ", verified=" + verified
+                + ", rounds=" + rounds
+                + ", hashNanos=" + hashnanos
+                + ", candidateNanos=" + candidateNanos()
+                + ", verifyNanos=" + verifynanos
+                + ", totalNanos=" + totalnanos
+                + '}';
+    }
+}
@@ -0,0 +1,148 @@
+package io.github.stepping1st.hh;
+
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Little-endian reader of binary index snapshot.
+ * <p>
+ * arrays and vector stores are mapped from the file instead of copied,
+ * so they are served from the page cache. mapped buffers stay valid after
+ * the channel is closed.
+ */
+public final class SnapshotInput {
+    private final FileChannel channel;
+    private final ByteBuffer scalar = ByteBuffer.allocate(Long.BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    private long position;
+
+    /**
+     * @param channel channel to read
+     * @throws IOException if the channel is not a snapshot
+     *                     of a supported version
+     */
+    public SnapshotInput(final FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.position = channel.position();
+        if (readInt() != SnapshotOutput.MAGIC) {
+            throw new IOException("not an index snapshot");
+        }
+        int version = readInt();
+        if (version != SnapshotOutput.VERSION) {
+            throw new IOException("unsupported snapshot version: " + version);
+        }
+    }
+
+    /**
+     * @return int value
+     * @throws IOException if reading failed
+     */
+    public int readInt() throws IOException {
+        return read(Integer.BYTES).getInt(0);
+    }
+
+    /**
+     * @return long value
+     * @throws IOException if reading failed
+     */
+    public long readLong() throws IOException {
+        return read(Long.BYTES).getLong(0);
+    }
+
+    /**
+     * @return double value
+     * @throws IOException if reading failed
+     */
+    public double readDouble() throws IOException {
+        return read(Double.BYTES).getDouble(0);
+    }
+
+    /**
+     * map int array written by {@link SnapshotOutput#writeInts(int[])}.
+     *
+     * @return mapped int array
+     * @throws IOException if reading failed
+     */
+    public IntBuffer readInts() throws IOException {
+        int length = readInt();
+        align();
+        long bytes = (long) length * Integer.BYTES;
+        IntBuffer values = channel.map(FileChannel.MapMode.READ_ONLY,
+                position, bytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        position += bytes;
+        return values;
+    }
+
+    /**
+     * read bytes written by {@link SnapshotOutput#writeBytes(byte[])}.
+     *
+     * @return byte array
+     * @throws IOException if reading failed
+     */
+    public byte[] readBytes() throws IOException {
+        byte[] values = new byte[readInt()];
+        ByteBuffer buf = ByteBuffer.wrap(values);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        position += values.length;
+        return values;
+    }
+
+    /**
+     * map store written by {@link SnapshotOutput#writeStore(VectorStore)}.
+     *
+     * @return mapped vector store
+     * @throws IOException if reading failed
+     */
+    public VectorStore readStore() throws IOException {
+        int bytes = readInt();
+        int n = readInt();
+        int dim = readInt();
+        align();
+        Precision precision = null;
+        for (Precision p : Precision.values()) {
+            if (p.bytes() == bytes) {
+                precision = p;
+            }
+        }
+        if (precision == null) {
+            throw new IOException("unknown precision of " + bytes + " bytes");
+        }
+        VectorStore store = MappedVectorStore.map(
+                channel, position, n, dim, precision);
+        position += (long) n * dim * bytes;
+        return store;
+    }
+
+    /**
+     * skip padding up to the alignment.
+     */
+    public void align() {
+        long rest = position % SnapshotOutput.ALIGN;
+        if (rest != 0) {
+            position += SnapshotOutput.ALIGN - rest;
+        }
+    }
+
+    private ByteBuffer read(final int bytes) throws IOException {
+        ((Buffer) scalar).clear();
+        ((Buffer) scalar).limit(bytes);
+        while (scalar.hasRemaining()) {
+            if (channel.read(scalar, position + scalar.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        position += bytes;
+        return scalar;
+    }
+}
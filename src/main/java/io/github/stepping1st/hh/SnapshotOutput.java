@@ -0,0 +1,165 @@
+package io.github.stepping1st.hh;
+
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+
+/**
+ * Little-endian writer of binary index snapshot.
+ * <p>
+ * a snapshot starts with {@link #MAGIC} and {@link #VERSION}, and every
+ * array is aligned to {@link #ALIGN} bytes so that it can be mapped and
+ * read in place by {@link SnapshotInput}.
+ */
+public final class SnapshotOutput {
+    /**
+     * magic number of snapshot, "HHSN".
+     */
+    public static final int MAGIC = 0x4E534848;
+    /**
+     * version of snapshot format.
+     */
+    public static final int VERSION = 2;
+    /**
+     * alignment of arrays.
+     */
+    public static final int ALIGN = Long.BYTES;
+    private static final int BUFFER_SIZE = 65536;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    private long position = 0;
+
+    /**
+     * @param channel channel to write
+     * @throws IOException if writing failed
+     */
+    public SnapshotOutput(final WritableByteChannel channel)
+            throws IOException {
+        this.channel = channel;
+        writeInt(MAGIC);
+        writeInt(VERSION);
+    }
+
+    /**
+     * @param value int value
+     * @throws IOException if writing failed
+     */
+    public void writeInt(final int value) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(value);
+        position += Integer.BYTES;
+    }
+
+    /**
+     * @param value long value
+     * @throws IOException if writing failed
+     */
+    public void writeLong(final long value) throws IOException {
+        ensure(Long.BYTES);
+        buffer.putLong(value);
+        position += Long.BYTES;
+    }
+
+    /**
+     * @param value double value
+     * @throws IOException if writing failed
+     */
+    public void writeDouble(final double value) throws IOException {
+        ensure(Double.BYTES);
+        buffer.putDouble(value);
+        position += Double.BYTES;
+    }
+
+    /**
+     * write length and aligned values.
+     *
+     * @param values int array
+     * @throws IOException if writing failed
+     */
+    public void writeInts(final int[] values) throws IOException {
+        writeInt(values.length);
+        align();
+        for (int v : values) {
+            writeInt(v);
+        }
+    }
+
+    /**
+     * write length and bytes.
+     *
+     * @param values byte array
+     * @throws IOException if writing failed
+     */
+    public void writeBytes(final byte[] values) throws IOException {
+        writeInt(values.length);
+        for (byte v : values) {
+            ensure(1);
+            buffer.put(v);
+            ++position;
+        }
+    }
+
+    /**
+     * write shape, precision and aligned row-major values of store.
+     *
+     * @param store vector store
+     * @throws IOException if writing failed
+     */
+    public void writeStore(final VectorStore store) throws IOException {
+        Precision precision = store.precision();
+        writeInt(precision.bytes());
+        writeInt(store.size());
+        writeInt(store.dim());
+        align();
+        double[] row = new double[store.dim()];
+        for (int i = 0; i < store.size(); i++) {
+            store.copy(i, row, 0);
+            for (double v : row) {
+                if (precision == Precision.DOUBLE) {
+                    writeDouble(v);
+                } else {
+                    ensure(Float.BYTES);
+                    buffer.putFloat((float) v);
+                    position += Float.BYTES;
+                }
+            }
+        }
+    }
+
+    /**
+     * pad zero bytes up to the alignment.
+     *
+     * @throws IOException if writing failed
+     */
+    public void align() throws IOException {
+        while (position % ALIGN != 0) {
+            ensure(1);
+            buffer.put((byte) 0);
+            ++position;
+        }
+    }
+
+    /**
+     * write buffered bytes to channel.
+     *
+     * @throws IOException if writing failed
+     */
+    public void flush() throws IOException {
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+    }
+
+    private void ensure(final int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
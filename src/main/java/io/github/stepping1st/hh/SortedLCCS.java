@@ -2,8 +2,6 @@ package io.github.stepping1st.hh;
 
 
 import it.unimi.dsi.fastutil.ints.IntComparator;
-import it.unimi.dsi.fastutil.ints.Int2IntMap;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrays;
 
 import java.io.Serializable;
@@ -137,45 +135,62 @@ public class SortedLCCS implements Serializable {
      * @param scanstep n scan step
      * @param query    query vector
      * @param f        perform by index
-     * @return search index and count
+     * @return visit count of search index, valid until the next search on
+     * the same thread
      */
-    public final Int2IntMap search(final int scanstep,
+    public final Visited search(final int scanstep,
                                    final int[] query,
                                    final IntConsumer f) {
-        return candidatesByScan(scanstep, query, f);
+        return candidatesByScan(scanstep, query, Deadline.NONE, f);
+    }
+
+    /**
+     * @param scanstep n scan step
+     * @param query    query vector
+     * @param deadline deadline of search
+     * @param f        perform by index
+     * @return visit count of search index, valid until the next search on
+     * the same thread
+     */
+    public final Visited search(final int scanstep,
+                                final int[] query,
+                                final Deadline deadline,
+                                final IntConsumer f) {
+        return candidatesByScan(scanstep, query, deadline, f);
     }
 
     /**
      * simple scan strategy (high data locality).
      */
-    private Int2IntMap candidatesByScan(final int scanstep,
+    private Visited candidatesByScan(final int scanstep,
                                         final int[] query,
+                                        final Deadline deadline,
                                         final IntConsumer f) {
         Locs locs = findMatchedLocs(query);
 
-        Int2IntMap checked = new Int2IntOpenHashMap();
-        checked.defaultReturnValue(0);
+        Visited checked = Visited.local();
 
         IntConsumer check = (idx) -> {
-            int cnt = checked.get(idx);
-            if (cnt == 0) {
+            if (checked.visit(idx) == 1) {
                 f.accept(idx);
             }
-            checked.put(idx, cnt + 1);
         };
 
         BiIntConsumer checkloc = (curidx, d) -> {
-            for (int i = curidx; 0 <= i && curidx - i < scanstep; --i) {
+            checked.probe();
+            for (int i = curidx; 0 <= i && curidx - i < scanstep
+                    && !deadline.check(); --i) {
                 int matchidx = sortedidx(d, i);
                 check.accept(matchidx);
             }
-            for (int i = curidx + 1; i < n && i - curidx - 1 < scanstep; ++i) {
+            for (int i = curidx + 1; i < n && i - curidx - 1 < scanstep
+                    && !deadline.check(); ++i) {
                 int matchidx = sortedidx(d, i);
                 check.accept(matchidx);
             }
         };
 
-        for (int i = 0; i < dim; ++i) {
+        for (int i = 0; i < dim && !deadline.expired(); ++i) {
             checkloc.accept(locs.idxes[i], i);
         }
 
@@ -0,0 +1,183 @@
+package io.github.stepping1st.hh;
+
+
+/**
+ * Bounded top-k collector of index and value.
+ * <p>
+ * k best values are kept in a binary heap of parallel primitive arrays
+ * whose root is the worst of them, so adding a candidate allocates
+ * nothing, a candidate worse than the k-th value is rejected in O(1)
+ * and the k-th value is read in O(1).
+ */
+public final class TopK {
+    private final int k;
+    /**
+     * -1 keeps the smallest values and 1 keeps the largest values.
+     */
+    private final int order;
+    private final int[] ids;
+    private final double[] values;
+    private int size = 0;
+
+    private TopK(final int k, final int order) {
+        this.k = k;
+        this.order = order;
+        this.ids = new int[k + 1];
+        this.values = new double[k + 1];
+    }
+
+    /**
+     * @param k number of values
+     * @return collector of k smallest values
+     */
+    public static TopK nearest(final int k) {
+        return new TopK(k, -1);
+    }
+
+    /**
+     * @param k number of values
+     * @return collector of k largest values
+     */
+    public static TopK furthest(final int k) {
+        return new TopK(k, 1);
+    }
+
+    /**
+     * @param idx   index
+     * @param value value of index
+     */
+    public void add(final int idx, final double value) {
+        if (k == 0 || size == k && compare(value, values[0]) < 0) {
+            // worse than the k-th value
+            return;
+        }
+        siftUp(size++, idx, value);
+        if (k < size) {
+            poll();
+        }
+    }
+
+    /**
+     * @return number of collected values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if k values are collected
+     */
+    public boolean full() {
+        return size == k;
+    }
+
+    /**
+     * @return k-th value if full, otherwise the worst possible value
+     */
+    public double threshold() {
+        if (full() && 0 < k) {
+            return values[0];
+        }
+        if (order < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * drop all collected values.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * drain collected values.
+     *
+     * @return collected values from the best
+     */
+    public SearchResult result() {
+        return result(false);
+    }
+
+    /**
+     * drain collected values.
+     *
+     * @param expired true if search was cut short by deadline
+     * @return collected values from the best
+     */
+    public SearchResult result(final boolean expired) {
+        return result(expired, SearchStats.NONE);
+    }
+
+    /**
+     * drain collected values.
+     *
+     * @param expired true if search was cut short by deadline
+     * @param stats   execution statistics of search
+     * @return collected values from the best
+     */
+    public SearchResult result(final boolean expired,
+                               final SearchStats stats) {
+        IdxVal[] sorted = new IdxVal[size];
+        for (int i = size - 1; 0 <= i; --i) {
+            sorted[i] = new IdxVal(ids[0], values[0]);
+            poll();
+        }
+        SearchResult result = new SearchResult(sorted.length, expired,
+                stats);
+        for (IdxVal w : sorted) {
+            result.add(w);
+        }
+        return result;
+    }
+
+    private void poll() {
+        int n = --size;
+        if (0 < n) {
+            siftDown(0, ids[n], values[n]);
+        }
+    }
+
+    /**
+     * @return negative if a is closer to the root than b
+     */
+    private int compare(final double a, final double b) {
+        return order * Double.compare(a, b);
+    }
+
+    private void siftUp(final int pos, final int idx, final double value) {
+        int i = pos;
+        while (0 < i) {
+            int parent = (i - 1) >>> 1;
+            if (0 <= compare(value, values[parent])) {
+                break;
+            }
+            ids[i] = ids[parent];
+            values[i] = values[parent];
+            i = parent;
+        }
+        ids[i] = idx;
+        values[i] = value;
+    }
+
+    private void siftDown(final int pos, final int idx, final double value) {
+        int i = pos;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = (i << 1) + 1;
+            int right = child + 1;
+            if (right < size && 0 < compare(values[child], values[right])) {
+                child = right;
+            }
+            if (compare(value, values[child]) <= 0) {
+                break;
+            }
+            ids[i] = ids[child];
+            values[i] = values[child];
+            i = child;
+        }
+        ids[i] = idx;
+        values[i] = value;
+    }
+}
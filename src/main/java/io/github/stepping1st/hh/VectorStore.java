@@ -0,0 +1,102 @@
+package io.github.stepping1st.hh;
+
+
+import java.io.Serializable;
+
+
+/**
+ * Row-major store of fixed dimension vectors.
+ */
+public interface VectorStore extends Serializable {
+    /**
+     * @return number of vectors
+     */
+    int size();
+
+    /**
+     * @return dimension of vector
+     */
+    int dim();
+
+    /**
+     * @return storage precision of values
+     */
+    Precision precision();
+
+    /**
+     * @param idx index of vector
+     * @param d   dimension index
+     * @return value of vector
+     */
+    double get(int idx, int d);
+
+    /**
+     * @param idx   index of vector
+     * @param d     dimension index
+     * @param value set value
+     */
+    void set(int idx, int d, double value);
+
+    /**
+     * copy vector into the destination array.
+     *
+     * @param idx  index of vector
+     * @param dest destination array
+     * @param pos  start position of destination
+     */
+    void copy(int idx, double[] dest, int pos);
+
+    /**
+     * dot product vector and a.
+     *
+     * @param idx index of vector
+     * @param a   input vector
+     * @return dot product value
+     */
+    double dot(int idx, double[] a);
+
+    /**
+     * dot product the first len values of vector and a from start.
+     *
+     * @param idx   index of vector
+     * @param a     input vector
+     * @param start start of a
+     * @param len   dimension
+     * @return dot product value
+     */
+    double dot(int idx, double[] a, int start, int len);
+
+    /**
+     * product of dot products of count consecutive vectors and a.
+     *
+     * @param idx   index of the first vector
+     * @param count number of vectors
+     * @param a     input vector
+     * @param start start of a
+     * @return product of dot product values
+     */
+    default double product(final int idx, final int count,
+                           final double[] a, final int start) {
+        double val = 1D;
+        for (int c = 0; c < count; ++c) {
+            val *= dot(idx + c, a, start, dim());
+        }
+        return val;
+    }
+
+    /**
+     * @param idx index of vector
+     * @return l2-norm of vector
+     */
+    double norm(int idx);
+
+    /**
+     * @param idx index of vector
+     * @return copied vector
+     */
+    default double[] row(final int idx) {
+        double[] row = new double[dim()];
+        copy(idx, row, 0);
+        return row;
+    }
+}
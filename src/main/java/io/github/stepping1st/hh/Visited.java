@@ -0,0 +1,117 @@
+package io.github.stepping1st.hh;
+
+
+import java.util.Arrays;
+
+
+/**
+ * Reusable epoch stamped visit counter of keys.
+ * <p>
+ * a key is visited in the current epoch if its stamp equals the epoch,
+ * so clearing is a single increment instead of a fill. visits and probes
+ * of the epoch are counted for search statistics. an instance is owned
+ * by a thread and is reused by every search on the thread.
+ */
+public final class Visited {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final ThreadLocal<Visited> LOCAL =
+            ThreadLocal.withInitial(Visited::new);
+    private int[] stamps = new int[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int epoch = 0;
+    private int size = 0;
+    private int visits = 0;
+    private int probes = 0;
+
+    private Visited() {
+    }
+
+    /**
+     * cleared visit counter of current thread.
+     * <p>
+     * the counter is valid until the next call on the same thread.
+     *
+     * @return visit counter
+     */
+    public static Visited local() {
+        Visited visited = LOCAL.get();
+        visited.clear();
+        return visited;
+    }
+
+    /**
+     * start a new epoch.
+     */
+    public void clear() {
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            epoch = 0;
+        }
+        ++epoch;
+        size = 0;
+        visits = 0;
+        probes = 0;
+    }
+
+    /**
+     * count a probe of bucket or sorted location.
+     */
+    public void probe() {
+        ++probes;
+    }
+
+    /**
+     * visit a key.
+     *
+     * @param key non negative key
+     * @return visit count of key including this visit
+     */
+    public int visit(final int key) {
+        ++visits;
+        if (stamps.length <= key) {
+            int capacity = Math.max(key + 1, stamps.length << 1);
+            stamps = Arrays.copyOf(stamps, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        if (stamps[key] != epoch) {
+            stamps[key] = epoch;
+            counts[key] = 1;
+            ++size;
+        } else {
+            ++counts[key];
+        }
+        return counts[key];
+    }
+
+    /**
+     * @param key non negative key
+     * @return visit count of key in current epoch
+     */
+    public int count(final int key) {
+        if (key < stamps.length && stamps[key] == epoch) {
+            return counts[key];
+        }
+        return 0;
+    }
+
+    /**
+     * @return number of visited keys in current epoch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of visits including revisits in current epoch
+     */
+    public int visits() {
+        return visits;
+    }
+
+    /**
+     * @return number of probes in current epoch
+     */
+    public int probes() {
+        return probes;
+    }
+}
@@ -2,15 +2,28 @@ package io.github.stepping1st.hh.hash;
 
 
 import org.apache.commons.math.random.RandomData;
-import io.github.stepping1st.hh.Op;
+import io.github.stepping1st.hh.Precision;
+import io.github.stepping1st.hh.SnapshotInput;
+import io.github.stepping1st.hh.SnapshotOutput;
+import io.github.stepping1st.hh.VectorStore;
+
+import java.io.IOException;
 
 
 /**
  * Bilinear Hyperplane(BH) Hash.
  */
-public class BHHash implements Hash<double[], int[], int[]> {
-    private final double[] randu;
-    private final double[] randv;
+public class BHHash implements BatchHash, ProbeHash {
+    /**
+     * row 2 * i and 2 * i + 1 are u and v of the i-th bit,
+     * so both are projected in a single sweep over the input.
+     */
+    private final VectorStore proj;
+    /**
+     * structured projection of the 2 * m * l values, null if dense.
+     */
+    private final Projection structured;
+    private final int dim;
     private final int m;
     private final int l;
 
@@ -21,29 +34,99 @@ public class BHHash implements Hash<double[], int[], int[]> {
      * @param rd random data
      */
     public BHHash(final int d, final int m, final int l, final RandomData rd) {
+        this(d, m, l, rd, Precision.DOUBLE);
+    }
+
+    /**
+     * @param d         data dim
+     * @param m         single hasher of the compond hasher
+     * @param l         hash tables
+     * @param rd        random data
+     * @param precision storage precision of projections
+     */
+    public BHHash(final int d, final int m, final int l, final RandomData rd,
+                  final Precision precision) {
+        this(d, m, l, rd, precision, ProjectionType.GAUSSIAN);
+    }
+
+    /**
+     * @param d         data dim
+     * @param m         single hasher of the compond hasher
+     * @param l         hash tables
+     * @param rd        random data
+     * @param precision storage precision of projections
+     * @param type      random projection backend
+     */
+    public BHHash(final int d, final int m, final int l, final RandomData rd,
+                  final Precision precision, final ProjectionType type) {
+        this.dim = d;
         this.m = m;
         this.l = l;
 
-        int size = m * l * d;
-        randu = new double[size];
-        randv = new double[size];
-        for (int i = 0; i < size; i++) {
-            randu[i] = rd.nextGaussian(0.0f, 1.0f);
-            randv[i] = rd.nextGaussian(0.0f, 1.0f);
+        structured = type.create(d, 2 * m * l, rd);
+        if (structured == null) {
+            proj = precision.create(2 * m * l, d);
+            for (int i = 0; i < m * l; i++) {
+                for (int j = 0; j < d; j++) {
+                    proj.set(2 * i, j, rd.nextGaussian(0.0f, 1.0f));
+                    proj.set(2 * i + 1, j, rd.nextGaussian(0.0f, 1.0f));
+                }
+            }
+        } else {
+            proj = null;
+        }
+    }
+
+    /**
+     * hash read from snapshot.
+     */
+    private BHHash(final int dim, final int m, final int l,
+                   final VectorStore proj, final Projection structured) {
+        this.dim = dim;
+        this.m = m;
+        this.l = l;
+        this.proj = proj;
+        this.structured = structured;
+    }
+
+    /**
+     * @param out snapshot output
+     * @throws IOException if writing failed
+     */
+    final void write(final SnapshotOutput out) throws IOException {
+        out.writeInt(dim);
+        out.writeInt(m);
+        out.writeInt(l);
+        HashSnapshot.writeProjection(proj, structured, out);
+    }
+
+    /**
+     * @param in snapshot input
+     * @return hash read from snapshot
+     * @throws IOException if reading failed
+     */
+    static BHHash read(final SnapshotInput in) throws IOException {
+        int dim = in.readInt();
+        int m = in.readInt();
+        int l = in.readInt();
+        int kind = in.readInt();
+        if (kind == HashSnapshot.DENSE) {
+            return new BHHash(dim, m, l, in.readStore(), null);
         }
+        return new BHHash(dim, m, l, null,
+                HashSnapshot.readStructured(kind, in));
     }
 
     @Override
     public final int[] data(final double[] data) {
-        assert randu.length == m * l * data.length;
+        assert dim == data.length;
+        double[] row = project(data);
         int[] sigs = new int[l];
         for (int i = 0; i < l; ++i) {
             int sig = 0;
             for (int j = 0; j < m; ++j) {
-                int pos = (i * m + j) * data.length;
-                double val1 = Op.dot(data, pos, randu);
-                double val2 = Op.dot(data, pos, randv);
-                int sign = boolToInt(0 < val1 * val2);
+                double val = hash(row, 0, i * m + j);
+                int sign = boolToInt(0 < val);
                 sig = (sig << 1) | sign;
             }
             sigs[i] = sig;
@@ -53,15 +136,22 @@ public class BHHash implements Hash<double[], int[], int[]> {
 
     @Override
     public final int[] query(final double[] query) {
-        assert randu.length == m * l * query.length;
+        return query(query, null);
+    }
+
+    @Override
+    public final int[] query(final double[] query, final double[] margins) {
+        assert dim == query.length;
+        double[] row = project(query);
         int[] sigs = new int[l];
         for (int i = 0; i < l; ++i) {
             int sig = 0;
             for (int j = 0; j < m; ++j) {
-                int pos = (i * m + j) * query.length;
-                double val1 = Op.dot(query, pos, randu);
-                double val2 = Op.dot(query, pos, randv);
-                int sign = boolToInt(!(0 < val1 * val2));
+                double val = hash(row, 0, i * m + j);
+                if (margins != null) {
+                    margins[i * m + j] = Math.abs(val);
+                }
+                int sign = boolToInt(!(0 < val));
                 sig = (sig << 1) | sign;
             }
             sigs[i] = sig;
@@ -69,6 +159,53 @@ public class BHHash implements Hash<double[], int[], int[]> {
         return sigs;
     }
 
+    @Override
+    public final int tables() {
+        return l;
+    }
+
+    @Override
+    public final int bits() {
+        return m;
+    }
+
+    @Override
+    public final void data(final VectorStore data, final int from,
+                           final int to, final int[][] sigs) {
+        assert dim == data.dim();
+        if (structured == null) {
+            HashBlocks.data(data, from, to, sigs, m, l, this::hash);
+        } else {
+            double[] row = new double[dim];
+            HashBlocks.data(data, from, to, sigs, m, l, structured.size(),
+                    (store, idx, dest, pos) -> {
+                        store.copy(idx, row, 0);
+                        structured.project(row, 0, dest, pos);
+                    }, this::hash);
+        }
+    }
+
+    /**
+     * @param x input vector
+     * @return x itself if dense, otherwise projected values of x
+     */
+    private double[] project(final double[] x) {
+        if (structured == null) {
+            return x;
+        }
+        double[] out = new double[structured.size()];
+        structured.project(x, 0, out, 0);
+        return out;
+    }
+
+    private double hash(final double[] rows, final int start,
+                        final int bit) {
+        if (structured == null) {
+            return proj.product(2 * bit, 2, rows, start);
+        }
+        return rows[start + 2 * bit] * rows[start + 2 * bit + 1];
+    }
+
     private int boolToInt(final boolean sign) {
         if (sign) {
             return 1;
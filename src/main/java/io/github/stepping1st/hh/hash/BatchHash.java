@@ -0,0 +1,26 @@
+package io.github.stepping1st.hh.hash;
+
+
+import io.github.stepping1st.hh.VectorStore;
+
+
+/**
+ * Hash Algorithm which hashes a block of rows at once.
+ */
+public interface BatchHash extends Hash<double[], int[], int[]> {
+    /**
+     * @return number of hash tables
+     */
+    int tables();
+
+    /**
+     * hashing rows of data into a preallocated signature matrix.
+     *
+     * @param data data store
+     * @param from first row to hash
+     * @param to   last row to hash (exclusive)
+     * @param sigs signature matrix, {@code sigs[i - from]} is filled with
+     *             the signature of the i-th row
+     */
+    void data(VectorStore data, int from, int to, int[][] sigs);
+}
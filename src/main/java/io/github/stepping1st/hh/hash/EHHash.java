@@ -2,13 +2,31 @@ package io.github.stepping1st.hh.hash;
 
 
 import org.apache.commons.math.random.RandomData;
+import io.github.stepping1st.hh.Precision;
+import io.github.stepping1st.hh.SnapshotInput;
+import io.github.stepping1st.hh.SnapshotOutput;
+import io.github.stepping1st.hh.VectorStore;
+
+import java.io.IOException;
 
 
 /**
  * Embedding Hyperplane(EH) Hash.
+ * <p>
+ * x^T U x only depends on the symmetric part of U, so each random matrix
+ * is stored as its packed upper triangle (U_ij + U_ji off the diagonal)
+ * and every bit is a dot product with the packed outer product of x.
  */
-public class EHHash implements Hash<double[], int[], int[]> {
-    private final double[] randv;
+public class EHHash implements BatchHash, ProbeHash {
+    /**
+     * row i is the packed upper triangle of the i-th random matrix.
+     */
+    private final VectorStore randv;
+    /**
+     * structured projection of the packed outer product, null if dense.
+     */
+    private final Projection structured;
+    private final int dim;
     private final int m;
     private final int l;
 
@@ -19,25 +37,124 @@ public class EHHash implements Hash<double[], int[], int[]> {
      * @param rd random data
      */
     public EHHash(final int d, final int m, final int l, final RandomData rd) {
+        this(d, m, l, rd, Precision.DOUBLE);
+    }
+
+    /**
+     * @param d         data dim
+     * @param m         single hasher of the compond hasher
+     * @param l         hash tables
+     * @param rd        random data
+     * @param precision storage precision of projections
+     */
+    public EHHash(final int d, final int m, final int l, final RandomData rd,
+                  final Precision precision) {
+        this(d, m, l, rd, precision, ProjectionType.GAUSSIAN);
+    }
+
+    /**
+     * @param d         data dim
+     * @param m         single hasher of the compond hasher
+     * @param l         hash tables
+     * @param rd        random data
+     * @param precision storage precision of projections
+     * @param type      random projection backend
+     */
+    public EHHash(final int d, final int m, final int l, final RandomData rd,
+                  final Precision precision, final ProjectionType type) {
+        this.dim = d;
         this.m = m;
         this.l = l;
 
-        int size = m * l * d * d;
-        randv = new double[size];
+        int size = m * l;
+        int packed = d * (d + 1) / 2;
+        structured = type.create(packed, size, rd);
+        if (structured == null) {
+            randv = symmetric(size, d, rd, precision);
+        } else {
+            randv = null;
+        }
+    }
+
+    /**
+     * draw gaussian random matrices and pack their symmetric part.
+     *
+     * @param size      number of random matrices
+     * @param d         data dim
+     * @param rd        random data
+     * @param precision storage precision of projections
+     * @return packed upper triangles of random matrices
+     */
+    private static VectorStore symmetric(final int size, final int d,
+                                         final RandomData rd,
+                                         final Precision precision) {
+        VectorStore store = precision.create(size, d * (d + 1) / 2);
+        double[] matrix = new double[d * d];
         for (int i = 0; i < size; i++) {
-            randv[i] = rd.nextGaussian(0.0f, 1.0f);
+            for (int j = 0; j < matrix.length; j++) {
+                matrix[j] = rd.nextGaussian(0.0f, 1.0f);
+            }
+            int pos = 0;
+            for (int d1 = 0; d1 < d; ++d1) {
+                store.set(i, pos++, matrix[d1 * d + d1]);
+                for (int d2 = d1 + 1; d2 < d; ++d2) {
+                    store.set(i, pos++, matrix[d1 * d + d2]
+                            + matrix[d2 * d + d1]);
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * hash read from snapshot.
+     */
+    private EHHash(final int dim, final int m, final int l,
+                   final VectorStore randv, final Projection structured) {
+        this.dim = dim;
+        this.m = m;
+        this.l = l;
+        this.randv = randv;
+        this.structured = structured;
+    }
+
+    /**
+     * @param out snapshot output
+     * @throws IOException if writing failed
+     */
+    final void write(final SnapshotOutput out) throws IOException {
+        out.writeInt(dim);
+        out.writeInt(m);
+        out.writeInt(l);
+        HashSnapshot.writeProjection(randv, structured, out);
+    }
+
+    /**
+     * @param in snapshot input
+     * @return hash read from snapshot
+     * @throws IOException if reading failed
+     */
+    static EHHash read(final SnapshotInput in) throws IOException {
+        int dim = in.readInt();
+        int m = in.readInt();
+        int l = in.readInt();
+        int kind = in.readInt();
+        if (kind == HashSnapshot.DENSE) {
+            return new EHHash(dim, m, l, in.readStore(), null);
         }
+        return new EHHash(dim, m, l, null,
+                HashSnapshot.readStructured(kind, in));
     }
 
     @Override
     public final int[] data(final double[] data) {
-        assert randv.length == m * l * data.length * data.length;
+        assert dim == data.length;
+        double[] features = project(data);
         int[] sigs = new int[l];
         for (int i = 0; i < l; ++i) {
             int sig = 0;
             for (int j = 0; j < m; ++j) {
-                int pos = (i * m + j) * data.length * data.length;
-                double val = hash(data, pos);
+                double val = hash(features, 0, i * m + j);
                 int sign = boolToInt(0 < val);
                 sig = (sig << 1) | sign;
             }
@@ -48,13 +165,21 @@ public class EHHash implements Hash<double[], int[], int[]> {
 
     @Override
     public final int[] query(final double[] query) {
-        assert randv.length == m * l * query.length * query.length;
+        return query(query, null);
+    }
+
+    @Override
+    public final int[] query(final double[] query, final double[] margins) {
+        assert dim == query.length;
+        double[] features = project(query);
         int[] sigs = new int[l];
         for (int i = 0; i < l; ++i) {
             int sig = 0;
             for (int j = 0; j < m; ++j) {
-                int pos = (i * m + j) * query.length * query.length;
-                double val = hash(query, pos);
+                double val = hash(features, 0, i * m + j);
+                if (margins != null) {
+                    margins[i * m + j] = Math.abs(val);
+                }
                 int sign = boolToInt(!(0 < val));
                 sig = (sig << 1) | sign;
             }
@@ -63,14 +188,79 @@ public class EHHash implements Hash<double[], int[], int[]> {
         return sigs;
     }
 
-    private double hash(final double[] data, final int pos) {
-        double val = 0.0D;
-        for (int d1 = 0; d1 < data.length; ++d1) {
-            for (int d2 = 0; d2 < data.length; ++d2) {
-                val += data[d1] * data[d2] * randv[pos + d1 * data.length + d2];
+    @Override
+    public final int tables() {
+        return l;
+    }
+
+    @Override
+    public final int bits() {
+        return m;
+    }
+
+    @Override
+    public final void data(final VectorStore data, final int from,
+                           final int to, final int[][] sigs) {
+        assert dim == data.dim();
+        double[] row = new double[dim];
+        if (structured == null) {
+            HashBlocks.data(data, from, to, sigs, m, l, randv.dim(),
+                    (store, idx, dest, pos) -> {
+                        store.copy(idx, row, 0);
+                        expand(row, 0, dest, pos);
+                    }, this::hash);
+        } else {
+            double[] features = new double[structured.dim()];
+            HashBlocks.data(data, from, to, sigs, m, l, structured.size(),
+                    (store, idx, dest, pos) -> {
+                        store.copy(idx, row, 0);
+                        expand(row, 0, features, 0);
+                        structured.project(features, 0, dest, pos);
+                    }, this::hash);
+        }
+    }
+
+    /**
+     * @param x input vector
+     * @return packed outer product of x if dense,
+     * otherwise projected values of it
+     */
+    private double[] project(final double[] x) {
+        double[] features = new double[dim * (dim + 1) / 2];
+        expand(x, 0, features, 0);
+        if (structured == null) {
+            return features;
+        }
+        double[] out = new double[structured.size()];
+        structured.project(features, 0, out, 0);
+        return out;
+    }
+
+    /**
+     * packed upper triangle of the outer product of x.
+     *
+     * @param x     input vector
+     * @param start start of x
+     * @param dest  destination array
+     * @param pos   start position of destination
+     */
+    private void expand(final double[] x, final int start,
+                        final double[] dest, final int pos) {
+        int k = pos;
+        for (int d1 = 0; d1 < dim; ++d1) {
+            double v = x[start + d1];
+            for (int d2 = d1; d2 < dim; ++d2) {
+                dest[k++] = v * x[start + d2];
             }
         }
-        return val;
+    }
+
+    private double hash(final double[] rows, final int start,
+                        final int bit) {
+        if (structured == null) {
+            return randv.dot(bit, rows, start, randv.dim());
+        }
+        return rows[start + bit];
     }
 
     private int boolToInt(final boolean sign) {
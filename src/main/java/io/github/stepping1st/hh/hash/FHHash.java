@@ -4,14 +4,18 @@ package io.github.stepping1st.hh.hash;
 import io.github.stepping1st.hh.RandSampler;
 import org.apache.commons.math.random.RandomData;
 import io.github.stepping1st.hh.IdxVal;
+import io.github.stepping1st.hh.VectorStore;
 
 import java.util.Arrays;
 
 
 /**
  * Furthest Hyperplane(FH) Hash.
+ * <p>
+ * query is sampled from a random stream derived from the query,
+ * so {@link #query(double[])} is thread-safe.
  */
-public class FHHash implements Hash<double[][], FHHash.Transform, IdxVal[]> {
+public class FHHash implements Hash<VectorStore, FHHash.Transform, IdxVal[]> {
     private final int fhdim;
     private final RandSampler sampler;
 
@@ -33,9 +37,19 @@ public class FHHash implements Hash<double[][], FHHash.Transform, IdxVal[]> {
     }
 
     @Override
-    public final Transform data(final double[][] data) {
-        int n = data.length;
+    public final Transform data(final VectorStore data) {
+        return data(data, data.size());
+    }
 
+    /**
+     * transformation of the first n data, so data can be appended while
+     * transforming.
+     *
+     * @param data input data
+     * @param n    number of data to transform
+     * @return transformed data
+     */
+    public final Transform data(final VectorStore data, final int n) {
         // calc centroid, l2-norm, and max l2-norm
         double[] norm = new double[n];
         double[] centroid = new double[fhdim];
@@ -46,7 +60,7 @@ public class FHHash implements Hash<double[][], FHHash.Transform, IdxVal[]> {
         double M = Double.MIN_VALUE;
         for (int i = 0; i < n; ++i) {
             // calc sampleData with data transformation
-            IdxVal[] sample = sampler.sampling(data[i]);
+            IdxVal[] sample = sampler.sampling(data.row(i));
             double l2 = 0.0;
             for (IdxVal w : sample) {
                 l2 += Math.pow(w.value(), 2);
@@ -84,6 +98,23 @@ public class FHHash implements Hash<double[][], FHHash.Transform, IdxVal[]> {
         return new Transform(norm, centroid, samples, M, arr);
     }
 
+    /**
+     * distance of transformed data to the centroid.
+     *
+     * @param centroid centroid of transformed data
+     * @param sample   sample data
+     * @param last     last coordinate of transformed data
+     * @return distance to centroid
+     */
+    public final double dist(final double[] centroid, final IdxVal[] sample,
+                             final double last) {
+        double l2centroid = 0.0D;
+        for (double c : centroid) {
+            l2centroid += Math.pow(c, 2);
+        }
+        return calcTransformDist(fhdim, last, l2centroid, sample, centroid);
+    }
+
     private double calcTransformDist(final int fhdim,
                                      final double last,
                                      final double l2centroid,
@@ -110,7 +141,7 @@ public class FHHash implements Hash<double[][], FHHash.Transform, IdxVal[]> {
 
     @Override
     public final IdxVal[] query(final double[] query) {
-        return sampler.sampling(query);
+        return sampler.query(query);
     }
 
     /**
@@ -0,0 +1,204 @@
+package io.github.stepping1st.hh.hash;
+
+
+import io.github.stepping1st.hh.SnapshotInput;
+import io.github.stepping1st.hh.SnapshotOutput;
+import org.apache.commons.math.random.RandomData;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/**
+ * Randomized Hadamard transform projection.
+ * <p>
+ * the input is zero padded to n = 2^k and each block of n projected values
+ * is {@code (H D_3)(H D_2)(H D_1) x}, where H is the Walsh-Hadamard
+ * transform and D_i are random +1/-1 diagonals. a block costs
+ * O(n log n) and its rows are orthogonal and close to gaussian.
+ */
+public class HadamardProjection implements Projection {
+    private static final int ROUNDS = 3;
+    /**
+     * per-thread buffer of a block, grown to the largest n.
+     */
+    private static final ThreadLocal<double[]> BUFFER =
+            ThreadLocal.withInitial(() -> new double[0]);
+    private final int dim;
+    private final int size;
+    private final int n;
+    /**
+     * signs[b][r] is the r-th random diagonal of the b-th block.
+     */
+    private final boolean[][][] signs;
+    /**
+     * select[i] is the transformed coordinate of the i-th projected value
+     * in block i / n.
+     */
+    private final int[] select;
+
+    /**
+     * @param dim  dimension of input vector
+     * @param size number of projected values
+     * @param rd   random data
+     */
+    public HadamardProjection(final int dim, final int size,
+                              final RandomData rd) {
+        this.dim = dim;
+        this.size = size;
+        this.n = pad(dim);
+        int blocks = (size + n - 1) / n;
+        this.signs = new boolean[blocks][ROUNDS][n];
+        for (boolean[][] block : signs) {
+            for (boolean[] sign : block) {
+                for (int i = 0; i < n; i++) {
+                    sign[i] = rd.nextInt(0, 1) == 1;
+                }
+            }
+        }
+        this.select = new int[size];
+        for (int b = 0; b < blocks; b++) {
+            int count = Math.min(n, size - b * n);
+            int[] perm = rd.nextPermutation(n, count);
+            System.arraycopy(perm, 0, select, b * n, count);
+        }
+    }
+
+    private HadamardProjection(final int dim, final int size,
+                               final boolean[][][] signs,
+                               final int[] select) {
+        this.dim = dim;
+        this.size = size;
+        this.n = pad(dim);
+        this.signs = signs;
+        this.select = select;
+    }
+
+    /**
+     * @return power of two not less than dim
+     */
+    private static int pad(final int dim) {
+        int len = 1;
+        while (len < dim) {
+            len <<= 1;
+        }
+        return len;
+    }
+
+    /**
+     * write dim, size, signs as a flat byte array and selection.
+     *
+     * @param out snapshot output
+     * @throws IOException if writing failed
+     */
+    final void write(final SnapshotOutput out) throws IOException {
+        out.writeInt(dim);
+        out.writeInt(size);
+        byte[] flat = new byte[signs.length * ROUNDS * n];
+        int k = 0;
+        for (boolean[][] block : signs) {
+            for (boolean[] sign : block) {
+                for (int i = 0; i < n; i++) {
+                    if (sign[i]) {
+                        flat[k] = 1;
+                    }
+                    ++k;
+                }
+            }
+        }
+        out.writeBytes(flat);
+        out.writeInts(select);
+    }
+
+    /**
+     * @param in snapshot input
+     * @return projection read from snapshot
+     * @throws IOException if reading failed or projection is invalid
+     */
+    static HadamardProjection read(final SnapshotInput in)
+            throws IOException {
+        int dim = in.readInt();
+        int size = in.readInt();
+        if (dim <= 0 || Integer.MAX_VALUE / 2 < dim || size < 0) {
+            throw new IOException("invalid hadamard projection: dim=" + dim
+                    + ", size=" + size);
+        }
+        int n = pad(dim);
+        int blocks = (size + n - 1) / n;
+        byte[] flat = in.readBytes();
+        int[] select = HashSnapshot.readInts(in);
+        if (flat.length != (long) blocks * ROUNDS * n
+                || select.length != size) {
+            throw new IOException("invalid hadamard projection: length");
+        }
+        for (int s : select) {
+            if (s < 0 || n <= s) {
+                throw new IOException("invalid hadamard projection: " + s);
+            }
+        }
+        boolean[][][] signs = new boolean[blocks][ROUNDS][n];
+        int k = 0;
+        for (boolean[][] block : signs) {
+            for (boolean[] sign : block) {
+                for (int i = 0; i < n; i++) {
+                    sign[i] = flat[k++] != 0;
+                }
+            }
+        }
+        return new HadamardProjection(dim, size, signs, select);
+    }
+
+    @Override
+    public final int dim() {
+        return dim;
+    }
+
+    @Override
+    public final int size() {
+        return size;
+    }
+
+    @Override
+    public final void project(final double[] x, final int start,
+                              final double[] out, final int pos) {
+        double[] buf = BUFFER.get();
+        if (buf.length < n) {
+            buf = new double[n];
+            BUFFER.set(buf);
+        }
+        for (int b = 0; b < signs.length; b++) {
+            System.arraycopy(x, start, buf, 0, dim);
+            Arrays.fill(buf, dim, n, 0D);
+            for (boolean[] sign : signs[b]) {
+                for (int i = 0; i < n; i++) {
+                    if (sign[i]) {
+                        buf[i] = -buf[i];
+                    }
+                }
+                transform(buf);
+            }
+            int end = Math.min(size, (b + 1) * n);
+            for (int i = b * n; i < end; i++) {
+                out[pos + i] = buf[select[i]];
+            }
+        }
+    }
+
+    /**
+     * in-place unnormalized fast Walsh-Hadamard transform.
+     *
+     * @param buf input vector of length at least n
+     */
+    private void transform(final double[] buf) {
+        for (int h = 1; h < n; h <<= 1) {
+            for (int i = 0; i < n; i += h << 1) {
+                for (int j = i; j < i + h; j++) {
+                    double u = buf[j];
+                    double v = buf[j + h];
+                    buf[j] = u + v;
+                    buf[j + h] = u - v;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.stepping1st.hh.hash;
+
+
+import io.github.stepping1st.hh.VectorStore;
+
+import java.util.Arrays;
+
+
+/**
+ * Cache-blocked batch hashing.
+ * <p>
+ * rows are packed into a tile and every tile of projections is swept
+ * over the whole row tile, so the projections are streamed through
+ * cache once per row tile instead of once per row. tiles are sized by the
+ * row width, so a row tile and a tile of projection rows each take half
+ * of hash.block_bytes, at most hash.block_rows rows and hash.block_bits
+ * bits.
+ */
+final class HashBlocks {
+    private static final int ROWS = Integer.parseInt(
+            System.getenv().getOrDefault("hash.block_rows", "64")
+    );
+    private static final int BITS = Integer.parseInt(
+            System.getenv().getOrDefault("hash.block_bits", "64")
+    );
+    private static final long BYTES = Long.parseLong(
+            System.getenv().getOrDefault("hash.block_bytes", "262144")
+    );
+
+    private HashBlocks() {
+    }
+
+    /**
+     * projected value of a single bit.
+     */
+    interface BitValue {
+        /**
+         * @param rows  packed rows
+         * @param start start of the row in rows
+         * @param bit   bit index of m * l bits
+         * @return projected value
+         */
+        double value(double[] rows, int start, int bit);
+    }
+
+    /**
+     * row expansion written into the packed tile.
+     */
+    interface Features {
+        /**
+         * @param data data store
+         * @param idx  index of row
+         * @param dest packed rows
+         * @param pos  start of the row in dest
+         */
+        void expand(VectorStore data, int idx, double[] dest, int pos);
+    }
+
+    /**
+     * hashing rows of data into signature matrix.
+     *
+     * @param data data store
+     * @param from first row to hash
+     * @param to   last row to hash (exclusive)
+     * @param sigs signature matrix
+     * @param m    single hasher of the compond hasher
+     * @param l    hash tables
+     * @param f    projected value of bit
+     */
+    static void data(final VectorStore data, final int from, final int to,
+                     final int[][] sigs, final int m, final int l,
+                     final BitValue f) {
+        data(data, from, to, sigs, m, l, data.dim(), VectorStore::copy, f);
+    }
+
+    /**
+     * hashing expanded rows of data into signature matrix.
+     *
+     * @param data     data store
+     * @param from     first row to hash
+     * @param to       last row to hash (exclusive)
+     * @param sigs     signature matrix
+     * @param m        single hasher of the compond hasher
+     * @param l        hash tables
+     * @param dim      dimension of expanded row
+     * @param features row expansion
+     * @param f        projected value of bit
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    static void data(final VectorStore data, final int from, final int to,
+                     final int[][] sigs, final int m, final int l,
+                     final int dim, final Features features,
+                     final BitValue f) {
+        int bits = m * l;
+        int tile = tile(dim);
+        int tilerows = Math.min(ROWS, tile);
+        int tilebits = Math.min(BITS, tile);
+        double[] packed = new double[Math.min(tilerows, to - from) * dim];
+        for (int rs = from; rs < to; rs += tilerows) {
+            int re = Math.min(to, rs + tilerows);
+            for (int r = rs; r < re; ++r) {
+                features.expand(data, r, packed, (r - rs) * dim);
+                Arrays.fill(sigs[r - from], 0, l, 0);
+            }
+            for (int bs = 0; bs < bits; bs += tilebits) {
+                int be = Math.min(bits, bs + tilebits);
+                for (int r = rs; r < re; ++r) {
+                    int[] sig = sigs[r - from];
+                    int start = (r - rs) * dim;
+                    for (int b = bs; b < be; ++b) {
+                        if (0 < f.value(packed, start, b)) {
+                            sig[b / m] |= 1 << (m - 1 - b % m);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param dim dimension of row
+     * @return rows of dim values fitting in half of the byte budget
+     */
+    static int tile(final int dim) {
+        long rowbytes = (long) Math.max(1, dim) * Double.BYTES;
+        return (int) Math.max(1L,
+                Math.min(Integer.MAX_VALUE, BYTES / (2 * rowbytes)));
+    }
+}
@@ -0,0 +1,137 @@
+package io.github.stepping1st.hh.hash;
+
+
+import io.github.stepping1st.hh.SnapshotInput;
+import io.github.stepping1st.hh.SnapshotOutput;
+import io.github.stepping1st.hh.VectorStore;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+
+
+/**
+ * Binary snapshot of hyperplane hashes.
+ * <p>
+ * dense projections are written as vector stores and mapped on read.
+ * structured projections are small and written as flat int and byte
+ * arrays, checked and rebuilt on read.
+ */
+public final class HashSnapshot {
+    /**
+     * dense projection stored as a vector store.
+     */
+    static final int DENSE = 0;
+    /**
+     * randomized hadamard projection.
+     */
+    static final int HADAMARD = 2;
+    /**
+     * very sparse projection.
+     */
+    static final int SPARSE = 3;
+    private static final int BH = 1;
+    private static final int MH = 2;
+    private static final int EH = 3;
+    private static final int LOW_RANK_EH = 4;
+
+    private HashSnapshot() {
+    }
+
+    /**
+     * @param hash hash of BH, MH, EH or low-rank EH
+     * @param out  snapshot output
+     * @throws IOException if writing failed
+     */
+    public static void write(final Hash<double[], int[], int[]> hash,
+                             final SnapshotOutput out) throws IOException {
+        if (hash instanceof BHHash) {
+            out.writeInt(BH);
+            ((BHHash) hash).write(out);
+        } else if (hash instanceof MHHash) {
+            out.writeInt(MH);
+            ((MHHash) hash).write(out);
+        } else if (hash instanceof EHHash) {
+            out.writeInt(EH);
+            ((EHHash) hash).write(out);
+        } else if (hash instanceof LowRankEHHash) {
+            out.writeInt(LOW_RANK_EH);
+            ((LowRankEHHash) hash).write(out);
+        } else {
+            throw new IllegalArgumentException(
+                    "unsupported hash: " + hash.getClass().getName());
+        }
+    }
+
+    /**
+     * @param in snapshot input
+     * @return hash read from snapshot
+     * @throws IOException if reading failed
+     */
+    public static Hash<double[], int[], int[]> read(final SnapshotInput in)
+            throws IOException {
+        int kind = in.readInt();
+        if (kind == BH) {
+            return BHHash.read(in);
+        } else if (kind == MH) {
+            return MHHash.read(in);
+        } else if (kind == EH) {
+            return EHHash.read(in);
+        } else if (kind == LOW_RANK_EH) {
+            return LowRankEHHash.read(in);
+        }
+        throw new IOException("unknown hash kind: " + kind);
+    }
+
+    /**
+     * @param dense      dense projection, null if structured
+     * @param structured structured projection, null if dense
+     * @param out        snapshot output
+     * @throws IOException if writing failed
+     */
+    static void writeProjection(final VectorStore dense,
+                                final Projection structured,
+                                final SnapshotOutput out)
+            throws IOException {
+        if (structured == null) {
+            out.writeInt(DENSE);
+            out.writeStore(dense);
+        } else if (structured instanceof HadamardProjection) {
+            out.writeInt(HADAMARD);
+            ((HadamardProjection) structured).write(out);
+        } else if (structured instanceof SparseProjection) {
+            out.writeInt(SPARSE);
+            ((SparseProjection) structured).write(out);
+        } else {
+            throw new IllegalArgumentException("unsupported projection: "
+                    + structured.getClass().getName());
+        }
+    }
+
+    /**
+     * @param kind kind of projection read before
+     * @param in   snapshot input
+     * @return structured projection
+     * @throws IOException if reading failed or projection is invalid
+     */
+    static Projection readStructured(final int kind, final SnapshotInput in)
+            throws IOException {
+        if (kind == HADAMARD) {
+            return HadamardProjection.read(in);
+        } else if (kind == SPARSE) {
+            return SparseProjection.read(in);
+        }
+        throw new IOException("unknown projection kind: " + kind);
+    }
+
+    /**
+     * @param in snapshot input
+     * @return int array copied from snapshot
+     * @throws IOException if reading failed
+     */
+    static int[] readInts(final SnapshotInput in) throws IOException {
+        IntBuffer buf = in.readInts();
+        int[] values = new int[buf.remaining()];
+        buf.get(values);
+        return values;
+    }
+}
@@ -0,0 +1,175 @@
+package io.github.stepping1st.hh.hash;
+
+
+import org.apache.commons.math.random.RandomData;
+import io.github.stepping1st.hh.Precision;
+import io.github.stepping1st.hh.SnapshotInput;
+import io.github.stepping1st.hh.SnapshotOutput;
+import io.github.stepping1st.hh.VectorStore;
+
+import java.io.IOException;
+
+
+/**
+ * Low-rank Embedding Hyperplane(EH) Hash.
+ * <p>
+ * each random matrix is factored into a sum of r rank-one matrices
+ * {@code U = a_1 b_1^T + ... + a_r b_r^T}, so that
+ * {@code x^T U x = (a_1 x)(b_1 x) + ... + (a_r x)(b_r x)} costs O(r * d)
+ * instead of O(d * d) per bit.
+ */
+public class LowRankEHHash implements BatchHash, ProbeHash {
+    /**
+     * row 2 * (i * r + t) and 2 * (i * r + t) + 1 are a_t and b_t
+     * of the i-th random matrix.
+     */
+    private final VectorStore proj;
+    private final int m;
+    private final int l;
+    private final int r;
+
+    /**
+     * @param d  data dim
+     * @param m  single hasher of the compond hasher
+     * @param l  hash tables
+     * @param r  rank of random matrix
+     * @param rd random data
+     */
+    public LowRankEHHash(final int d, final int m, final int l, final int r,
+                         final RandomData rd) {
+        this(d, m, l, r, rd, Precision.DOUBLE);
+    }
+
+    /**
+     * @param d         data dim
+     * @param m         single hasher of the compond hasher
+     * @param l         hash tables
+     * @param r         rank of random matrix
+     * @param rd        random data
+     * @param precision storage precision of projections
+     */
+    public LowRankEHHash(final int d, final int m, final int l, final int r,
+                         final RandomData rd, final Precision precision) {
+        this.m = m;
+        this.l = l;
+        this.r = r;
+
+        int size = 2 * m * l * r;
+        proj = precision.create(size, d);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < d; j++) {
+                proj.set(i, j, rd.nextGaussian(0.0f, 1.0f));
+            }
+        }
+    }
+
+    /**
+     * hash read from snapshot.
+     */
+    private LowRankEHHash(final int m, final int l, final int r,
+                          final VectorStore proj) {
+        this.m = m;
+        this.l = l;
+        this.r = r;
+        this.proj = proj;
+    }
+
+    /**
+     * @param out snapshot output
+     * @throws IOException if writing failed
+     */
+    final void write(final SnapshotOutput out) throws IOException {
+        out.writeInt(m);
+        out.writeInt(l);
+        out.writeInt(r);
+        out.writeStore(proj);
+    }
+
+    /**
+     * @param in snapshot input
+     * @return hash read from snapshot
+     * @throws IOException if reading failed
+     */
+    static LowRankEHHash read(final SnapshotInput in) throws IOException {
+        int m = in.readInt();
+        int l = in.readInt();
+        int r = in.readInt();
+        return new LowRankEHHash(m, l, r, in.readStore());
+    }
+
+    @Override
+    public final int[] data(final double[] data) {
+        assert proj.dim() == data.length;
+        int[] sigs = new int[l];
+        for (int i = 0; i < l; ++i) {
+            int sig = 0;
+            for (int j = 0; j < m; ++j) {
+                double val = hash(data, 0, i * m + j);
+                int sign = boolToInt(0 < val);
+                sig = (sig << 1) | sign;
+            }
+            sigs[i] = sig;
+        }
+        return sigs;
+    }
+
+    @Override
+    public final int[] query(final double[] query) {
+        return query(query, null);
+    }
+
+    @Override
+    public final int[] query(final double[] query, final double[] margins) {
+        assert proj.dim() == query.length;
+        int[] sigs = new int[l];
+        for (int i = 0; i < l; ++i) {
+            int sig = 0;
+            for (int j = 0; j < m; ++j) {
+                double val = hash(query, 0, i * m + j);
+                if (margins != null) {
+                    margins[i * m + j] = Math.abs(val);
+                }
+                int sign = boolToInt(!(0 < val));
+                sig = (sig << 1) | sign;
+            }
+            sigs[i] = sig;
+        }
+        return sigs;
+    }
+
+    @Override
+    public final int tables() {
+        return l;
+    }
+
+    @Override
+    public final int bits() {
+        return m;
+    }
+
+    @Override
+    public final void data(final VectorStore data, final int from,
+                           final int to, final int[][] sigs) {
+        assert proj.dim() == data.dim();
+        HashBlocks.data(data, from, to, sigs, m, l, this::hash);
+    }
+
+    private double hash(final double[] data, final int start,
+                        final int bit) {
+        int pos = 2 * bit * r;
+        double val = 0.0D;
+        for (int t = 0; t < r; ++t) {
+            val += proj.product(pos + 2 * t, 2, data, start);
+        }
+        return val;
+    }
+
+    private int boolToInt(final boolean sign) {
+        if (sign) {
+            return 1;
+        } else {
+            return 0;
+        }
+    }
+
+}
@@ -2,14 +2,24 @@ package io.github.stepping1st.hh.hash;
 
 
 import org.apache.commons.math.random.RandomData;
-import io.github.stepping1st.hh.Op;
+import io.github.stepping1st.hh.Precision;
+import io.github.stepping1st.hh.SnapshotInput;
+import io.github.stepping1st.hh.SnapshotOutput;
+import io.github.stepping1st.hh.VectorStore;
+
+import java.io.IOException;
 
 
 /**
  * Multilinear Hyperplane(MH) Hash.
  */
-public class MHHash implements Hash<double[], int[], int[]> {
-    private final double[] randv;
+public class MHHash implements BatchHash, ProbeHash {
+    private final VectorStore randv;
+    /**
+     * structured projection of the m * l * M values, null if dense.
+     */
+    private final Projection structured;
+    private final int dim;
     @SuppressWarnings("checkstyle:MemberName")
     private final int M;
     private final int m;
@@ -25,26 +35,110 @@ public class MHHash implements Hash<double[], int[], int[]> {
     @SuppressWarnings("checkstyle:ParameterName")
     public MHHash(final int dim, final int m, final int l,
                   final int M, final RandomData rd) {
+        this(dim, m, l, M, rd, Precision.DOUBLE);
+    }
+
+    /**
+     * @param dim       data dim
+     * @param m         single hasher of the compond hasher
+     * @param l         hash tables
+     * @param M         proj vector used for a single hasher
+     * @param rd        random data
+     * @param precision storage precision of projections
+     */
+    @SuppressWarnings("checkstyle:ParameterName")
+    public MHHash(final int dim, final int m, final int l,
+                  final int M, final RandomData rd,
+                  final Precision precision) {
+        this(dim, m, l, M, rd, precision, ProjectionType.GAUSSIAN);
+    }
+
+    /**
+     * @param dim       data dim
+     * @param m         single hasher of the compond hasher
+     * @param l         hash tables
+     * @param M         proj vector used for a single hasher
+     * @param rd        random data
+     * @param precision storage precision of projections
+     * @param type      random projection backend
+     */
+    @SuppressWarnings("checkstyle:ParameterName")
+    public MHHash(final int dim, final int m, final int l,
+                  final int M, final RandomData rd,
+                  final Precision precision, final ProjectionType type) {
+        this.dim = dim;
+        this.m = m;
+        this.l = l;
+        this.M = M;
+
+        int size = m * l * M;
+        structured = type.create(dim, size, rd);
+        if (structured == null) {
+            randv = precision.create(size, dim);
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < dim; j++) {
+                    randv.set(i, j, rd.nextGaussian(0.0f, 1.0f));
+                }
+            }
+        } else {
+            randv = null;
+        }
+    }
+
+    /**
+     * hash read from snapshot.
+     */
+    @SuppressWarnings("checkstyle:ParameterName")
+    private MHHash(final int dim, final int m, final int l, final int M,
+                   final VectorStore randv, final Projection structured) {
+        this.dim = dim;
         this.m = m;
         this.l = l;
         this.M = M;
+        this.randv = randv;
+        this.structured = structured;
+    }
 
-        int size = m * l * M * dim;
-        randv = new double[size];
-        for (int i = 0; i < size; i++) {
-            randv[i] = rd.nextGaussian(0.0f, 1.0f);
+    /**
+     * @param out snapshot output
+     * @throws IOException if writing failed
+     */
+    final void write(final SnapshotOutput out) throws IOException {
+        out.writeInt(dim);
+        out.writeInt(m);
+        out.writeInt(l);
+        out.writeInt(M);
+        HashSnapshot.writeProjection(randv, structured, out);
+    }
+
+    /**
+     * @param in snapshot input
+     * @return hash read from snapshot
+     * @throws IOException if reading failed
+     */
+    @SuppressWarnings("checkstyle:LocalVariableName")
+    static MHHash read(final SnapshotInput in) throws IOException {
+        int dim = in.readInt();
+        int m = in.readInt();
+        int l = in.readInt();
+        int M = in.readInt();
+        int kind = in.readInt();
+        if (kind == HashSnapshot.DENSE) {
+            return new MHHash(dim, m, l, M, in.readStore(), null);
         }
+        return new MHHash(dim, m, l, M, null,
+                HashSnapshot.readStructured(kind, in));
     }
 
     @Override
     public final int[] data(final double[] data) {
-        assert randv.length == m * l * M * data.length;
+        assert dim == data.length;
+        double[] row = project(data);
         int[] sigs = new int[l];
         for (int i = 0; i < l; ++i) {
             int sig = 0;
             for (int j = 0; j < m; ++j) {
-                int pos = (i * m + j) * M * data.length;
-                double val = hash(data, pos);
+                double val = hash(row, 0, i * m + j);
                 int sign = boolToInt(0 < val);
                 sig = (sig << 1) | sign;
             }
@@ -55,13 +149,21 @@ public class MHHash implements Hash<double[], int[], int[]> {
 
     @Override
     public final int[] query(final double[] query) {
-        assert randv.length == m * l * M * query.length;
+        return query(query, null);
+    }
+
+    @Override
+    public final int[] query(final double[] query, final double[] margins) {
+        assert dim == query.length;
+        double[] row = project(query);
         int[] sigs = new int[l];
         for (int i = 0; i < l; ++i) {
             int sig = 0;
             for (int j = 0; j < m; ++j) {
-                int pos = (i * m + j) * M * query.length;
-                double val = hash(query, pos);
+                double val = hash(row, 0, i * m + j);
+                if (margins != null) {
+                    margins[i * m + j] = Math.abs(val);
+                }
                 int sign = boolToInt(!(0 < val));
                 sig = (sig << 1) | sign;
             }
@@ -70,10 +172,53 @@ public class MHHash implements Hash<double[], int[], int[]> {
         return sigs;
     }
 
-    private double hash(final double[] query, final int pos) {
+    @Override
+    public final int tables() {
+        return l;
+    }
+
+    @Override
+    public final int bits() {
+        return m;
+    }
+
+    @Override
+    public final void data(final VectorStore data, final int from,
+                           final int to, final int[][] sigs) {
+        assert dim == data.dim();
+        if (structured == null) {
+            HashBlocks.data(data, from, to, sigs, m, l, this::hash);
+        } else {
+            double[] row = new double[dim];
+            HashBlocks.data(data, from, to, sigs, m, l, structured.size(),
+                    (store, idx, dest, pos) -> {
+                        store.copy(idx, row, 0);
+                        structured.project(row, 0, dest, pos);
+                    }, this::hash);
+        }
+    }
+
+    /**
+     * @param x input vector
+     * @return x itself if dense, otherwise projected values of x
+     */
+    private double[] project(final double[] x) {
+        if (structured == null) {
+            return x;
+        }
+        double[] out = new double[structured.size()];
+        structured.project(x, 0, out, 0);
+        return out;
+    }
+
+    private double hash(final double[] rows, final int start,
+                        final int bit) {
+        if (structured == null) {
+            return randv.product(bit * M, M, rows, start);
+        }
         double val = 1D;
-        for (int k = 0; k < M; ++k) {
-            val *= Op.dot(query, pos + k * query.length, randv);
+        for (int k = start + bit * M; k < start + (bit + 1) * M; ++k) {
+            val *= rows[k];
         }
         return val;
     }
@@ -4,17 +4,23 @@ package io.github.stepping1st.hh.hash;
 import io.github.stepping1st.hh.RandSampler;
 import org.apache.commons.math.random.RandomData;
 import io.github.stepping1st.hh.IdxVal;
+import io.github.stepping1st.hh.Precision;
+import io.github.stepping1st.hh.VectorStore;
 
 
 /**
  * Nearest Hyperplane(NH) Hash.
+ * <p>
+ * query is sampled from a random stream derived from the query,
+ * so {@link #query(double[])} is thread-safe. appended data and
+ * {@link #transform(VectorStore, int)} are sampled in the same way.
  */
-public class NHHash implements Hash<double[][], int[][], int[]> {
+public class NHHash implements Hash<VectorStore, int[][], int[]> {
     private final RandSampler sampler;
     private final int nhdim;
     private final int m;
     private final double w;
-    private final double[] proja;
+    private final VectorStore proja;
     private final double[] projb;
 
     /**
@@ -26,16 +32,31 @@ public class NHHash implements Hash<double[][], int[][], int[]> {
      */
     public NHHash(final int d, final int m, final int s,
                   final double w, final RandomData rd) {
+        this(d, m, s, w, rd, Precision.DOUBLE);
+    }
+
+    /**
+     * @param d         dimension
+     * @param m         single hasher of the compond hasher
+     * @param s         scale factor of dimension
+     * @param w         bucket width
+     * @param rd        random data
+     * @param precision storage precision of projections
+     */
+    public NHHash(final int d, final int m, final int s,
+                  final double w, final RandomData rd,
+                  final Precision precision) {
         this.m = m;
         this.w = w;
         this.nhdim = d * (d + 1) / 2 + 1;
         this.sampler = new RandSampler(d, s, rd);
 
         // sample random projection variables
-        int projsize = m * nhdim;
-        proja = new double[projsize];
-        for (int i = 0; i < projsize; i++) {
-            proja[i] = rd.nextGaussian(0.0f, 1.0f);
+        proja = precision.create(m, nhdim);
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < nhdim; j++) {
+                proja.set(i, j, rd.nextGaussian(0.0f, 1.0f));
+            }
         }
         projb = new double[m];
         for (int i = 0; i < m; i++) {
@@ -48,16 +69,21 @@ public class NHHash implements Hash<double[][], int[][], int[]> {
      *
      * @param data input data object o
      */
-    private Signature samplingSignature(final double[] data) {
+    private Signature samplingSignature(final double[] data,
+                                        final boolean derived) {
         double[] projs = new double[m];
         // calc sample with data transformation
-        IdxVal[] sample = sampler.sampling(data);
+        IdxVal[] sample;
+        if (derived) {
+            sample = sampler.query(data);
+        } else {
+            sample = sampler.sampling(data);
+        }
         // calc the signature of sampleData
         for (int i = 0; i < m; ++i) {
-            int start = i * nhdim;
             double val = 0.0;
             for (IdxVal w : sample) {
-                val += proja[start + w.idx()] * w.value();
+                val += proja.get(i, w.idx()) * w.value();
             }
             projs[i] = val;
         }
@@ -76,53 +102,134 @@ public class NHHash implements Hash<double[][], int[][], int[]> {
     }
 
     @Override
-    public final int[][] data(final double[][] data) {
+    public final int[][] data(final VectorStore data) {
+        return transform(data).sigs();
+    }
+
+    /**
+     * signatures of data normalized by max l2-norm-sqr of f(o).
+     *
+     * @param data input data
+     * @return signatures and max l2-norm-sqr
+     */
+    public final Transform transform(final VectorStore data) {
+        return transform(data, data.size(), false);
+    }
+
+    /**
+     * signatures of the first n rows of data normalized by max
+     * l2-norm-sqr of f(o), sampled from random streams derived from rows.
+     *
+     * @param data input data
+     * @param n    number of rows
+     * @return signatures and max l2-norm-sqr
+     */
+    public final Transform transform(final VectorStore data, final int n) {
+        return transform(data, n, true);
+    }
+
+    /**
+     * signature of appended data normalized by max l2-norm-sqr of f(o),
+     * sampled from a random stream derived from data.
+     *
+     * @param data input data
+     * @param M    max l2-norm-sqr
+     * @return signature, null if l2-norm-sqr of f(o) exceeds M
+     */
+    @SuppressWarnings("checkstyle:ParameterName")
+    public final int[] data(final double[] data, final double M) {
+        Signature sampled = samplingSignature(data, true);
+        if (M < sampled.norm) {
+            return null;
+        }
+        return signature(sampled, M);
+    }
+
+    private Transform transform(final VectorStore data, final int n,
+                                final boolean derived) {
         // projected data sampling and normalize
-        int n = data.length;
         double m = Double.MIN_VALUE;
         Signature[] sample = new Signature[n];
 
         // calc sample hash values
         for (int i = 0; i < n; ++i) {
-            Signature sig = samplingSignature(data[i]);
+            Signature sig = samplingSignature(data.row(i), derived);
             sample[i] = sig;
             m = Math.max(sig.norm, m);
         }
 
         int[][] sigs = new int[n][];
         for (int i = 0; i < n; ++i) {
-            Signature sampled = sample[i];
-            double lastcoord = Math.sqrt(m - sampled.norm);
-            double[] proj = sampled.value;
-            int[] sig = new int[this.m];
-            for (int j = 0; j < this.m; ++j) {
-                double val = proj[j] + lastcoord * proja[(j + 1) * nhdim - 1];
-                double v = (val + projb[j]) / w;
-                sig[j] = (int) v;
-            }
-            sigs[i] = sig;
+            sigs[i] = signature(sample[i], m);
+        }
+        return new Transform(sigs, m);
+    }
+
+    @SuppressWarnings("checkstyle:ParameterName")
+    private int[] signature(final Signature sampled, final double M) {
+        double lastcoord = Math.sqrt(M - sampled.norm);
+        double[] proj = sampled.value;
+        int[] sig = new int[this.m];
+        for (int j = 0; j < this.m; ++j) {
+            double val = proj[j] + lastcoord * proja.get(j, nhdim - 1);
+            double v = (val + projb[j]) / w;
+            sig[j] = (int) v;
         }
-        return sigs;
+        return sig;
     }
 
     @Override
     public final int[] query(final double[] query) {
         int[] sig = new int[m];
         // calc sample with query transformation
-        IdxVal[] sample = sampler.sampling(query);
+        IdxVal[] sample = sampler.query(query);
 
         // calc the signature of sample_data
         for (int i = 0; i < m; ++i) {
             double val = 0.0D;
             for (int j = 0; j < sample.length; ++j) {
                 int idx = sample[j].idx();
-                val += proja[i * nhdim + idx] * sample[j].value();
+                val += proja.get(i, idx) * sample[j].value();
             }
             sig[i] = (int) ((val + projb[i]) / w);
         }
         return sig;
     }
 
+    /**
+     * Transformed data.
+     */
+    public static class Transform {
+        private final int[][] sigs;
+        @SuppressWarnings("checkstyle:MemberName")
+        private final double M;
+
+        /**
+         * @param sigs signatures of data
+         * @param M    max l2-norm-sqr
+         */
+        @SuppressWarnings("checkstyle:ParameterName")
+        public Transform(final int[][] sigs, final double M) {
+            this.sigs = sigs;
+            this.M = M;
+        }
+
+        /**
+         * @return signatures of data.
+         */
+        public final int[][] sigs() {
+            return sigs;
+        }
+
+        /**
+         * @return max l2-norm-sqr.
+         */
+        @SuppressWarnings("checkstyle:MethodName")
+        public final double M() {
+            return M;
+        }
+    }
+
     /**
      * Signature of data.
      */
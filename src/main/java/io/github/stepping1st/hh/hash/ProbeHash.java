@@ -0,0 +1,28 @@
+package io.github.stepping1st.hh.hash;
+
+
+/**
+ * Hash Algorithm which reports the confidence of each query bit.
+ */
+public interface ProbeHash extends Hash<double[], int[], int[]> {
+    /**
+     * @return number of hash tables
+     */
+    int tables();
+
+    /**
+     * @return number of bits of a table
+     */
+    int bits();
+
+    /**
+     * hashing query data with margins of bits.
+     *
+     * @param query   query vector
+     * @param margins margins of m * l bits, {@code margins[i * m + j]} is
+     *                the absolute projected value of the j-th bit of
+     *                the i-th table
+     * @return hashed query
+     */
+    int[] query(double[] query, double[] margins);
+}
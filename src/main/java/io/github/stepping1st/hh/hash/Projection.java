@@ -0,0 +1,30 @@
+package io.github.stepping1st.hh.hash;
+
+
+import java.io.Serializable;
+
+
+/**
+ * Random linear projection of a vector onto several outputs at once.
+ */
+public interface Projection extends Serializable {
+    /**
+     * @return dimension of input vector
+     */
+    int dim();
+
+    /**
+     * @return number of projected values
+     */
+    int size();
+
+    /**
+     * project the dim values of x from start.
+     *
+     * @param x     input vector
+     * @param start start of x
+     * @param out   destination array
+     * @param pos   start position of destination
+     */
+    void project(double[] x, int start, double[] out, int pos);
+}
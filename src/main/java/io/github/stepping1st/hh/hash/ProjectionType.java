@@ -0,0 +1,53 @@
+package io.github.stepping1st.hh.hash;
+
+
+import org.apache.commons.math.random.RandomData;
+
+
+/**
+ * Random projection backend of hyperplane hashes.
+ */
+public enum ProjectionType {
+    /**
+     * dense gaussian projection, O(d) per projected value. it has no
+     * structured backend, hashes keep it as a store of projection rows in
+     * their precision and project with the kernels of the store.
+     */
+    GAUSSIAN {
+        @Override
+        public Projection create(final int dim, final int size,
+                                 final RandomData rd) {
+            return null;
+        }
+    },
+
+    /**
+     * randomized hadamard transform, O(d log d) for every d values.
+     */
+    HADAMARD {
+        @Override
+        public Projection create(final int dim, final int size,
+                                 final RandomData rd) {
+            return new HadamardProjection(dim, size, rd);
+        }
+    },
+
+    /**
+     * very sparse projection of +1/-1 with density 1/sqrt(d).
+     */
+    SPARSE {
+        @Override
+        public Projection create(final int dim, final int size,
+                                 final RandomData rd) {
+            return new SparseProjection(dim, size, rd);
+        }
+    };
+
+    /**
+     * @param dim  dimension of input vector
+     * @param size number of projected values
+     * @param rd   random data
+     * @return structured random projection, null if dense
+     */
+    public abstract Projection create(int dim, int size, RandomData rd);
+}
@@ -0,0 +1,136 @@
+package io.github.stepping1st.hh.hash;
+
+
+import io.github.stepping1st.hh.SnapshotInput;
+import io.github.stepping1st.hh.SnapshotOutput;
+import org.apache.commons.math.random.RandomData;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.IOException;
+
+
+/**
+ * Very sparse random projection.
+ * <p>
+ * each entry is +1 or -1 with probability 1 / (2 sqrt(d)) each and 0
+ * otherwise, so a projected value costs O(sqrt(d)) additions.
+ */
+public class SparseProjection implements Projection {
+    private final int dim;
+    /**
+     * indices[offsets[i], middles[i]) are +1 and
+     * indices[middles[i], offsets[i + 1]) are -1 of the i-th row.
+     */
+    private final int[] offsets;
+    private final int[] middles;
+    private final int[] indices;
+
+    /**
+     * @param dim  dimension of input vector
+     * @param size number of projected values
+     * @param rd   random data
+     */
+    public SparseProjection(final int dim, final int size,
+                            final RandomData rd) {
+        this.dim = dim;
+        this.offsets = new int[size + 1];
+        this.middles = new int[size];
+        double density = 1D / Math.sqrt(dim);
+        IntArrayList all = new IntArrayList();
+        IntArrayList neg = new IntArrayList();
+        for (int i = 0; i < size; i++) {
+            neg.clear();
+            for (int j = 0; j < dim; j++) {
+                double u = rd.nextUniform(0D, 1D);
+                if (u < density / 2) {
+                    all.add(j);
+                } else if (u < density) {
+                    neg.add(j);
+                }
+            }
+            if (all.size() == offsets[i] && neg.isEmpty()) {
+                // an empty row projects everything onto zero
+                all.add(rd.nextInt(0, dim - 1));
+            }
+            middles[i] = all.size();
+            all.addAll(neg);
+            offsets[i + 1] = all.size();
+        }
+        this.indices = all.toIntArray();
+    }
+
+    private SparseProjection(final int dim, final int[] offsets,
+                             final int[] middles, final int[] indices) {
+        this.dim = dim;
+        this.offsets = offsets;
+        this.middles = middles;
+        this.indices = indices;
+    }
+
+    /**
+     * write dim, offsets, middles and indices as flat int arrays.
+     *
+     * @param out snapshot output
+     * @throws IOException if writing failed
+     */
+    final void write(final SnapshotOutput out) throws IOException {
+        out.writeInt(dim);
+        out.writeInts(offsets);
+        out.writeInts(middles);
+        out.writeInts(indices);
+    }
+
+    /**
+     * @param in snapshot input
+     * @return projection read from snapshot
+     * @throws IOException if reading failed or projection is invalid
+     */
+    static SparseProjection read(final SnapshotInput in)
+            throws IOException {
+        int dim = in.readInt();
+        int[] offsets = HashSnapshot.readInts(in);
+        int[] middles = HashSnapshot.readInts(in);
+        int[] indices = HashSnapshot.readInts(in);
+        int size = middles.length;
+        if (dim <= 0 || offsets.length != size + 1 || offsets[0] != 0
+                || offsets[size] != indices.length) {
+            throw new IOException("invalid sparse projection: length");
+        }
+        for (int i = 0; i < size; i++) {
+            if (middles[i] < offsets[i] || offsets[i + 1] < middles[i]) {
+                throw new IOException("invalid sparse projection: row " + i);
+            }
+        }
+        for (int idx : indices) {
+            if (idx < 0 || dim <= idx) {
+                throw new IOException("invalid sparse projection: " + idx);
+            }
+        }
+        return new SparseProjection(dim, offsets, middles, indices);
+    }
+
+    @Override
+    public final int dim() {
+        return dim;
+    }
+
+    @Override
+    public final int size() {
+        return middles.length;
+    }
+
+    @Override
+    public final void project(final double[] x, final int start,
+                              final double[] out, final int pos) {
+        for (int i = 0; i < middles.length; i++) {
+            double val = 0D;
+            for (int k = offsets[i]; k < middles[i]; k++) {
+                val += x[start + indices[k]];
+            }
+            for (int k = middles[i]; k < offsets[i + 1]; k++) {
+                val -= x[start + indices[k]];
+            }
+            out[pos + i] = val;
+        }
+    }
+}
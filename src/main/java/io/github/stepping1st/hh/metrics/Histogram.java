@@ -0,0 +1,75 @@
+package io.github.stepping1st.hh.metrics;
+
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Lock-free histogram of non negative values in log2 buckets.
+ * <p>
+ * bucket 0 holds 0 and bucket i holds values in [2^(i-1), 2^i), so a
+ * percentile is known within a factor of two. every bucket is a striped
+ * counter, so threads recording into the same bucket update cells of
+ * their own instead of a shared one. recording allocates nothing once the
+ * cells are grown. negative values are recorded as 0.
+ */
+public final class Histogram implements Serializable {
+    /**
+     * number of buckets, one for 0 and one for each bit length of positive
+     * long.
+     */
+    public static final int BUCKETS = Long.SIZE;
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    /**
+     * max is raised by compare and set, so the histogram stays
+     * serializable unlike an accumulator of a lambda.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * empty histogram.
+     */
+    public Histogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param value value to record
+     */
+    public void record(final long value) {
+        long v = Math.max(0L, value);
+        counts[bucket(v)].increment();
+        sum.add(v);
+        long current = max.get();
+        while (current < v && !max.compareAndSet(current, v)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @param value non negative value
+     * @return bucket of value
+     */
+    public static int bucket(final long value) {
+        return Long.SIZE - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * counts of buckets are read one by one, so a snapshot taken while
+     * recording may miss values recorded during the snapshot.
+     *
+     * @return snapshot of histogram
+     */
+    public HistogramSnapshot snapshot() {
+        long[] values = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            values[i] = counts[i].sum();
+        }
+        return new HistogramSnapshot(values, sum.sum(), max.get());
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.stepping1st.hh.metrics;
+
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+
+/**
+ * Immutable snapshot of {@link Histogram}.
+ */
+public final class HistogramSnapshot implements Serializable {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    /**
+     * @param counts count of each log2 bucket
+     * @param sum    sum of values
+     * @param max    max of values
+     */
+    public HistogramSnapshot(final long[] counts, final long sum,
+                             final long max) {
+        this.counts = counts.clone();
+        long total = 0L;
+        for (long c : counts) {
+            total += c;
+        }
+        this.count = total;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * @return number of values
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return sum of values
+     */
+    public long sum() {
+        return sum;
+    }
+
+    /**
+     * @return max of values
+     */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * @return mean of values, 0 if empty
+     */
+    public double mean() {
+        if (count == 0L) {
+            return 0.0D;
+        }
+        return (double) sum / count;
+    }
+
+    /**
+     * @param bucket log2 bucket
+     * @return number of values in bucket
+     */
+    public long count(final int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * upper bound of the bucket holding the q-quantile, capped by max.
+     *
+     * @param q quantile in [0, 1]
+     * @return percentile of values, 0 if empty
+     */
+    public long percentile(final double q) {
+        long rank = (long) Math.ceil(q * count);
+        long seen = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (0L < seen && rank <= seen) {
+                return Math.min(max, upper(i));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return largest value of bucket
+     */
+    private static long upper(final int bucket) {
+        if (bucket == 0) {
+            return 0L;
+        }
+        if (Long.SIZE - 1 <= bucket) {
+            return Long.MAX_VALUE;
+        }
+        return (1L << bucket) - 1L;
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramSnapshot{"
+                + "count=" + count
+                + ", sum=" + sum
+                + ", max=" + max
+                + ", counts=" + Arrays.toString(counts)
+                + '}';
+    }
+}
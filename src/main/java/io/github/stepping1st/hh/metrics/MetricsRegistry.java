@@ -0,0 +1,101 @@
+package io.github.stepping1st.hh.metrics;
+
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Registry of metrics of named indexes.
+ * <p>
+ * registered metrics are exported as MBeans of the platform MBean server
+ * named io.github.stepping1st.hh:type=SearchMetrics,name=name, and are
+ * read together by {@link #snapshot()}.
+ */
+public final class MetricsRegistry {
+    private static final String DOMAIN = "io.github.stepping1st.hh";
+    private static final ConcurrentMap<String, SearchMetrics> METRICS =
+            new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * register metrics of index, replacing metrics of the same name.
+     *
+     * @param name    name of index
+     * @param metrics metrics of index
+     * @throws IllegalStateException if MBean can not be registered
+     */
+    public static synchronized void register(final String name,
+                                             final SearchMetrics metrics) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName object = objectName(name);
+        try {
+            if (server.isRegistered(object)) {
+                server.unregisterMBean(object);
+            }
+            server.registerMBean(metrics, object);
+        } catch (JMException e) {
+            throw new IllegalStateException("can not register: " + name, e);
+        }
+        METRICS.put(name, metrics);
+    }
+
+    /**
+     * @param name name of index
+     * @return true if metrics of name were registered
+     * @throws IllegalStateException if MBean can not be unregistered
+     */
+    public static synchronized boolean unregister(final String name) {
+        if (METRICS.remove(name) == null) {
+            return false;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName object = objectName(name);
+        try {
+            if (server.isRegistered(object)) {
+                server.unregisterMBean(object);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("can not unregister: " + name,
+                    e);
+        }
+        return true;
+    }
+
+    /**
+     * @param name name of index
+     * @return metrics of name, null if not registered
+     */
+    public static SearchMetrics get(final String name) {
+        return METRICS.get(name);
+    }
+
+    /**
+     * @return snapshot of every registered metrics by name
+     */
+    public static Map<String, MetricsSnapshot> snapshot() {
+        Map<String, MetricsSnapshot> snapshots = new TreeMap<>();
+        for (Map.Entry<String, SearchMetrics> e : METRICS.entrySet()) {
+            snapshots.put(e.getKey(), e.getValue().snapshot());
+        }
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    private static ObjectName objectName(final String name) {
+        try {
+            return new ObjectName(DOMAIN + ":type=SearchMetrics,name="
+                    + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new IllegalArgumentException("invalid name: " + name, e);
+        }
+    }
+}
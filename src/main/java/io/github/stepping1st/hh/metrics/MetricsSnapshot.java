@@ -0,0 +1,94 @@
+package io.github.stepping1st.hh.metrics;
+
+
+import java.io.Serializable;
+
+
+/**
+ * Immutable snapshot of {@link SearchMetrics}.
+ */
+public final class MetricsSnapshot implements Serializable {
+    private final long queries;
+    private final long expired;
+    private final long candidates;
+    private final HistogramSnapshot latency;
+    private final HistogramSnapshot candidate;
+    private final HistogramSnapshot partition;
+
+    /**
+     * @param queries    number of searches
+     * @param expired    number of searches cut short by deadline
+     * @param candidates candidates generated by every search
+     * @param latency    latency of search in nanoseconds
+     * @param candidate  candidates of search
+     * @param partition  sizes of partitions of index
+     */
+    public MetricsSnapshot(final long queries, final long expired,
+                           final long candidates,
+                           final HistogramSnapshot latency,
+                           final HistogramSnapshot candidate,
+                           final HistogramSnapshot partition) {
+        this.queries = queries;
+        this.expired = expired;
+        this.candidates = candidates;
+        this.latency = latency;
+        this.candidate = candidate;
+        this.partition = partition;
+    }
+
+    /**
+     * @return number of searches
+     */
+    public long queries() {
+        return queries;
+    }
+
+    /**
+     * @return number of searches cut short by deadline
+     */
+    public long expired() {
+        return expired;
+    }
+
+    /**
+     * @return candidates generated by every search
+     */
+    public long candidates() {
+        return candidates;
+    }
+
+    /**
+     * @return latency of search in nanoseconds
+     */
+    public HistogramSnapshot latency() {
+        return latency;
+    }
+
+    /**
+     * @return candidates of search
+     */
+    public HistogramSnapshot candidate() {
+        return candidate;
+    }
+
+    /**
+     * buckets of HashSearch, sorted runs of NHSearch, blocks of FHSearch.
+     *
+     * @return sizes of partitions of index
+     */
+    public HistogramSnapshot partition() {
+        return partition;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{"
+                + "queries=" + queries
+                + ", expired=" + expired
+                + ", candidates=" + candidates
+                + ", latency=" + latency
+                + ", candidate=" + candidate
+                + ", partition=" + partition
+                + '}';
+    }
+}
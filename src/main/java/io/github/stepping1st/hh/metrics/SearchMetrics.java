@@ -0,0 +1,178 @@
+package io.github.stepping1st.hh.metrics;
+
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+
+/**
+ * Aggregated metrics of searches on an index.
+ * <p>
+ * every search of the index records its latency, candidates and whether
+ * it expired, from any thread, into striped counters and lock-free
+ * histograms, so recording takes no lock and allocates nothing. sizes of
+ * partitions of the index are read when a snapshot is taken. recording is
+ * turned off by search_metrics.enabled=false.
+ */
+public final class SearchMetrics implements SearchMetricsMBean, Serializable {
+    private static final boolean ENABLED = Boolean.parseBoolean(
+            System.getenv().getOrDefault("search_metrics.enabled", "true")
+    );
+    private static final double P50 = 0.5D;
+    private static final double P99 = 0.99D;
+    private static final double P999 = 0.999D;
+    private final Sizes sizes;
+    private volatile Counters counters = new Counters();
+
+    /**
+     * @param sizes sizes of partitions of index
+     */
+    public SearchMetrics(final Sizes sizes) {
+        this.sizes = sizes;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} if enabled, otherwise 0
+     */
+    public long start() {
+        if (!ENABLED) {
+            return 0L;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * record a search.
+     *
+     * @param start      clock at start of search
+     * @param candidates candidates generated by search
+     * @param expired    true if search was cut short by deadline
+     */
+    public void record(final long start, final long candidates,
+                       final boolean expired) {
+        if (!ENABLED) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        Counters c = counters;
+        c.queries.increment();
+        if (expired) {
+            c.expired.increment();
+        }
+        c.candidates.add(candidates);
+        c.latency.record(nanos);
+        c.candidate.record(candidates);
+    }
+
+    /**
+     * @return snapshot of metrics
+     */
+    public MetricsSnapshot snapshot() {
+        Counters c = counters;
+        return new MetricsSnapshot(c.queries.sum(), c.expired.sum(),
+                c.candidates.sum(), c.latency.snapshot(),
+                c.candidate.snapshot(), partition());
+    }
+
+    /**
+     * @return sizes of partitions of index
+     */
+    private HistogramSnapshot partition() {
+        Histogram partition = new Histogram();
+        sizes.sizes(size -> partition.record(size));
+        return partition.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        counters = new Counters();
+    }
+
+    @Override
+    public long getQueries() {
+        return counters.queries.sum();
+    }
+
+    @Override
+    public long getExpired() {
+        return counters.expired.sum();
+    }
+
+    @Override
+    public long getCandidates() {
+        return counters.candidates.sum();
+    }
+
+    @Override
+    public double getLatencyMean() {
+        return counters.latency.snapshot().mean();
+    }
+
+    @Override
+    public long getLatencyP50() {
+        return counters.latency.snapshot().percentile(P50);
+    }
+
+    @Override
+    public long getLatencyP99() {
+        return counters.latency.snapshot().percentile(P99);
+    }
+
+    @Override
+    public long getLatencyP999() {
+        return counters.latency.snapshot().percentile(P999);
+    }
+
+    @Override
+    public long getLatencyMax() {
+        return counters.latency.snapshot().max();
+    }
+
+    @Override
+    public double getCandidatesMean() {
+        return counters.candidate.snapshot().mean();
+    }
+
+    @Override
+    public long getCandidatesP99() {
+        return counters.candidate.snapshot().percentile(P99);
+    }
+
+    @Override
+    public long getPartitions() {
+        return partition().count();
+    }
+
+    @Override
+    public double getPartitionSizeMean() {
+        return partition().mean();
+    }
+
+    @Override
+    public long getPartitionSizeMax() {
+        return partition().max();
+    }
+
+    /**
+     * Sizes of partitions of index.
+     */
+    @FunctionalInterface
+    public interface Sizes extends Serializable {
+        /**
+         * @param consumer consumer of the size of each partition
+         */
+        void sizes(IntConsumer consumer);
+    }
+
+    /**
+     * Counters of searches, replaced as a whole on reset.
+     */
+    private static final class Counters implements Serializable {
+        private final LongAdder queries = new LongAdder();
+        private final LongAdder expired = new LongAdder();
+        private final LongAdder candidates = new LongAdder();
+        private final Histogram latency = new Histogram();
+        private final Histogram candidate = new Histogram();
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.stepping1st.hh.metrics;
+
+
+/**
+ * JMX view of {@link SearchMetrics}.
+ * <p>
+ * latencies are in nanoseconds, and percentiles are upper bounds of log2
+ * buckets.
+ */
+public interface SearchMetricsMBean {
+    /**
+     * @return number of searches
+     */
+    long getQueries();
+
+    /**
+     * @return number of searches cut short by deadline
+     */
+    long getExpired();
+
+    /**
+     * @return candidates generated by every search
+     */
+    long getCandidates();
+
+    /**
+     * @return mean latency of search
+     */
+    double getLatencyMean();
+
+    /**
+     * @return median latency of search
+     */
+    long getLatencyP50();
+
+    /**
+     * @return 99th percentile latency of search
+     */
+    long getLatencyP99();
+
+    /**
+     * @return 99.9th percentile latency of search
+     */
+    long getLatencyP999();
+
+    /**
+     * @return max latency of search
+     */
+    long getLatencyMax();
+
+    /**
+     * @return mean candidates of search
+     */
+    double getCandidatesMean();
+
+    /**
+     * @return 99th percentile candidates of search
+     */
+    long getCandidatesP99();
+
+    /**
+     * @return number of partitions of index
+     */
+    long getPartitions();
+
+    /**
+     * @return mean size of partitions
+     */
+    double getPartitionSizeMean();
+
+    /**
+     * @return max size of partitions
+     */
+    long getPartitionSizeMax();
+
+    /**
+     * reset counters and histograms of searches.
+     */
+    void reset();
+}
@@ -1,33 +1,99 @@
 package io.github.stepping1st.hh.search;
 
 
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
 import org.apache.commons.math.random.RandomData;
 import io.github.stepping1st.hh.hash.FHHash;
+import io.github.stepping1st.hh.AppendVectorStore;
+import io.github.stepping1st.hh.Deadline;
+import io.github.stepping1st.hh.DoubleVectorStore;
 import io.github.stepping1st.hh.FHQuery;
 import io.github.stepping1st.hh.IdxVal;
+import io.github.stepping1st.hh.Precision;
 import io.github.stepping1st.hh.RQALSH;
+import io.github.stepping1st.hh.SearchResult;
+import io.github.stepping1st.hh.SearchStats;
+import io.github.stepping1st.hh.TopK;
 import io.github.stepping1st.hh.Dist;
+import io.github.stepping1st.hh.VectorStore;
+import io.github.stepping1st.hh.metrics.SearchMetrics;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.PriorityQueue;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.IntConsumer;
 
 
 /**
  * Furthest Hyperplane(FH) Neighbor Search.
+ * <p>
+ * appended data are scanned from a tail until fh_search.tail_size of them
+ * are hashed into a block of their own, placed among the blocks by its
+ * distance to the centroid. data are partitioned into blocks again when
+ * the centroid of data drifts more than fh_search.drift_ratio of the mean
+ * distance to the centroid, when fh_search.overflow_size appended data
+ * exceeding the max norm M are scanned exactly, or when
+ * fh_search.max_tail_blocks blocks are hashed from the tail. partitions
+ * run on the executor if given.
+ * <p>
+ * search reads an immutable state of blocks, and vectors of the state are
+ * published by the append store before the state, so search and partition
+ * run concurrently with append without locking. appends are serialized.
  */
 public class FHSearch implements Search<FHQuery> {
-    @SuppressWarnings("checkstyle:MemberName")
-    private final double M;
-    private final List<RQALSH> hashs;
-    private final FHHash hash;
     private static final int MAX_BLOCK_NUM = Integer.parseInt(
             System.getenv().getOrDefault("fh_search.max_block_num", "25000")
     );
+    private static final int TAIL_SIZE = Integer.parseInt(
+            System.getenv().getOrDefault("fh_search.tail_size", "1024")
+    );
+    private static final double DRIFT_RATIO = Double.parseDouble(
+            System.getenv().getOrDefault("fh_search.drift_ratio", "0.1")
+    );
+    private static final int OVERFLOW_SIZE = Integer.parseInt(
+            System.getenv().getOrDefault("fh_search.overflow_size", "1024")
+    );
+    private static final int MAX_TAIL_BLOCKS = Integer.parseInt(
+            System.getenv().getOrDefault("fh_search.max_tail_blocks", "64")
+    );
+    private final FHHash hash;
+    private volatile VectorStore data;
+    private volatile State state;
+    private final double b;
+    private final int m;
+    private final RandomData rd;
+    private final Precision precision;
+    private final transient ExecutorService executor;
+    private final SearchMetrics metrics = new SearchMetrics(this::sizes);
+    /**
+     * centroid of transformed data when partitioned.
+     */
+    private double[] centroid;
+    /**
+     * mean distance of data to centroid when partitioned.
+     */
+    private double spread;
+    /**
+     * sum of transformed data including appended ones.
+     */
+    private double[] sum;
+    private int count;
+    /**
+     * blocks hashed from the tail since partitioned.
+     */
+    private int flushed;
+    private final List<IdxVal[]> tailsamples = new ArrayList<>();
+    private final DoubleArrayList tailnorms = new DoubleArrayList();
+    private final DoubleArrayList taildists = new DoubleArrayList();
+    /**
+     * true while a partition runs, not restored so that a copy taken
+     * during one partitions again.
+     */
+    private transient boolean partitioning = false;
 
     /**
      * @param fhhash furthest hash
@@ -38,13 +104,69 @@ public class FHSearch implements Search<FHQuery> {
      */
     public FHSearch(final FHHash fhhash, final double b, final int m,
                     final double[][] data, final RandomData rd) {
-        this.hashs = new ArrayList<RQALSH>();
+        this(fhhash, b, m, new DoubleVectorStore(data), rd);
+    }
+
+    /**
+     * @param fhhash furthest hash
+     * @param b      interval ratio
+     * @param m      number of hash tables
+     * @param data   data store
+     * @param rd     random data
+     */
+    public FHSearch(final FHHash fhhash, final double b, final int m,
+                    final VectorStore data, final RandomData rd) {
+        this(fhhash, b, m, data, rd, Precision.DOUBLE);
+    }
+
+    /**
+     * @param fhhash    furthest hash
+     * @param b         interval ratio
+     * @param m         number of hash tables
+     * @param data      data store
+     * @param rd        random data
+     * @param precision storage precision of hash functions
+     */
+    public FHSearch(final FHHash fhhash, final double b, final int m,
+                    final VectorStore data, final RandomData rd,
+                    final Precision precision) {
+        this(fhhash, b, m, data, rd, precision, null);
+    }
+
+    /**
+     * @param fhhash    furthest hash
+     * @param b         interval ratio
+     * @param m         number of hash tables
+     * @param data      data store
+     * @param rd        random data
+     * @param precision storage precision of hash functions
+     * @param executor  executor to partition data, null to partition on
+     *                  append
+     */
+    public FHSearch(final FHHash fhhash, final double b, final int m,
+                    final VectorStore data, final RandomData rd,
+                    final Precision precision,
+                    final ExecutorService executor) {
         this.hash = fhhash;
+        this.data = data;
+        this.b = b;
+        this.m = m;
+        this.rd = rd;
+        this.precision = precision;
+        this.executor = executor;
+        int n = data.size();
+        reset(partition(data, n), n);
+    }
 
-        int n = data.length;
-        int fhdim = fhhash.fhdim();
-        FHHash.Transform norm = fhhash.data(data);
-        this.M = norm.M();
+    /**
+     * divide the first n data into blocks by distance to centroid.
+     */
+    private Partition partition(final VectorStore store, final int n) {
+        List<RQALSH> blocks = new ArrayList<>();
+        DoubleArrayList starts = new DoubleArrayList();
+
+        int fhdim = hash.fhdim();
+        FHHash.Transform norm = hash.data(store, n);
 
         IdxVal[] dists = norm.dist();
         int[] index = new int[n];
@@ -69,69 +191,327 @@ public class FHSearch implements Search<FHQuery> {
 
             // hash sampleData into m bucketing.
             // and sort table value by hash value
-            RQALSH hash = new RQALSH(
-                    cnt, fhdim, m, hashidx, norm.norm(), norm.samples(), rd);
-            this.hashs.add(hash);
+            synchronized (rd) {
+                blocks.add(new RQALSH(cnt, fhdim, m, hashidx,
+                        norm.norm(), norm.samples(), rd, precision));
+            }
+            starts.add(dists[start].value());
             start += cnt;
         }
         assert (start == n);
+
+        double total = 0.0D;
+        for (IdxVal dist : dists) {
+            total += dist.value();
+        }
+        return new Partition(norm.M(), blocks.toArray(new RQALSH[0]),
+                starts.toDoubleArray(), norm.centroid(), total / n);
+    }
+
+    /**
+     * search blocks of partition, and track drift of centroid from here.
+     */
+    private void reset(final Partition partition, final int n) {
+        this.centroid = partition.centroid;
+        this.spread = partition.spread;
+        int fhdim = hash.fhdim();
+        this.sum = new double[fhdim];
+        this.count = n;
+        for (int i = 0; i < fhdim; ++i) {
+            sum[i] = centroid[i] * n;
+        }
+        this.flushed = 0;
+        tailsamples.clear();
+        tailnorms.clear();
+        taildists.clear();
+        this.state = new State(partition.M, partition.blocks,
+                partition.starts, Keys.EMPTY, Keys.EMPTY);
     }
 
     @Override
-    public final List<IdxVal> nns(final FHQuery param) {
-        double[][] data = param.data();
+    public final SearchResult nns(final FHQuery param) {
         double[] query = param.query();
         int l = param.l();
         int top = param.top();
+        TopK queue = TopK.nearest(top);
+        Dist fun = param.dist();
+        Deadline deadline = Deadline.of(param);
+        SearchStats stats = SearchStats.of(param);
+        long start = stats.clock();
+        long begin = metrics.start();
+        long candidates = 0L;
+        // state before data, so data holds every index of state
+        State current = state;
+        VectorStore store = data;
 
-        IdxVal[] sample = getSampleQuery(query);
+        IdxVal[] sample = getSampleQuery(query, current.M);
+        stats.hashed(start);
 
         // point-to-hyperplane NNS
         int limit = param.limit() + top - 1;
-        double fixval = 2 * M;
-        PriorityQueue<IdxVal> queue = new PriorityQueue<>(
-                new Comparator<IdxVal>() {
-                    @Override
-                    public int compare(final IdxVal o1, final IdxVal o2) {
-                        return -Double.compare(o1.value(), o2.value());
-                    }
-                });
-        Dist fun = param.dist();
+        double fixval = 2 * current.M;
 
-        for (RQALSH hash : this.hashs) {
+        for (RQALSH hash : current.blocks) {
             // check candidates returned by rqalsh
             double kfndist = -1.0D;
-            if (top <= queue.size()) {
-                double kdist = queue.peek().value();
+            if (queue.full()) {
+                double kdist = queue.threshold();
                 kfndist = Math.sqrt(fixval - 2 * kdist * kdist);
             }
             // scan range search by distance between query and data
             IntList list = hash.fns(l, limit,
-                    kfndist, sample.length, sample);
-            for (int idx : list) {
-                double dist = fun.distance(query, data[idx]);
-                queue.add(new IdxVal(idx, dist));
-                if (top < queue.size()) {
-                    queue.poll();
-                }
+                    kfndist, sample.length, sample, deadline, stats);
+            long verify = stats.clock();
+            int i = 0;
+            for (; i < list.size() && !deadline.check(); ++i) {
+                int idx = list.getInt(i);
+                double dist = fun.distance(query, store, idx);
+                queue.add(idx, dist);
             }
+            stats.verified(verify, i);
             int size = list.size();
+            candidates += size;
             limit -= size;
-            if (limit <= 0) {
+            if (limit <= 0 || deadline.expired()) {
                 break;
             }
         }
+        // appended data not hashed yet
+        long verify = stats.clock();
+        int scanned = scan(current.tail, store, query, fun, deadline, queue)
+                + scan(current.overflow, store, query, fun, deadline, queue);
+        stats.generated(scanned, scanned);
+        stats.verified(verify, scanned);
+        candidates += scanned;
+
+        stats.finish(start);
+        metrics.record(begin, candidates, deadline.expired());
+        return queue.result(deadline.expired(), stats);
+    }
+
+    /**
+     * @return number of scanned keys
+     */
+    private static int scan(final Keys keys, final VectorStore store,
+                            final double[] query, final Dist fun,
+                            final Deadline deadline, final TopK queue) {
+        int i = 0;
+        for (; i < keys.size() && !deadline.check(); ++i) {
+            int idx = keys.get(i);
+            queue.add(idx, fun.distance(query, store, idx));
+        }
+        return i;
+    }
+
+    /**
+     * append data to search.
+     *
+     * @param vector vector to append
+     * @return index of appended data
+     */
+    public final synchronized int add(final double[] vector) {
+        VectorStore store = data;
+        if (!(store instanceof AppendVectorStore)) {
+            store = new AppendVectorStore(store);
+            data = store;
+        }
+        int idx = ((AppendVectorStore) store).append(vector);
+        insert(idx);
+        schedule();
+        return idx;
+    }
+
+    /**
+     * hash data into tail, or overflow if it exceeds M.
+     */
+    private void insert(final int idx) {
+        State current = state;
+        // sampled from a stream derived from the stored vector
+        IdxVal[] sample = hash.query(data.row(idx));
+        double l2 = norm(sample);
+        if (current.M < l2) {
+            state = new State(current.M, current.blocks, current.starts,
+                    current.tail, current.overflow.append(idx));
+            return;
+        }
+        double last = Math.sqrt(current.M - l2);
+        for (IdxVal w : sample) {
+            sum[w.idx()] += w.value();
+        }
+        sum[sum.length - 1] += last;
+        ++count;
+        tailsamples.add(sample);
+        tailnorms.add(last);
+        taildists.add(hash.dist(centroid, sample, last));
+        Keys tail = current.tail.append(idx);
+        if (tail.size() < TAIL_SIZE) {
+            state = new State(current.M, current.blocks, current.starts,
+                    tail, current.overflow);
+        } else {
+            flush(current, tail.toArray());
+        }
+    }
+
+    /**
+     * start partition if needed and no partition is running.
+     */
+    private void schedule() {
+        if (partitioning) {
+            return;
+        }
+        if (OVERFLOW_SIZE <= state.overflow.size()
+                || MAX_TAIL_BLOCKS <= flushed
+                || DRIFT_RATIO * spread < drift()) {
+            repartition();
+        }
+    }
+
+    /**
+     * partition every data again from the data appended so far.
+     */
+    private void repartition() {
+        VectorStore store = data;
+        int n = store.size();
+        partitioning = true;
+        execute(() -> {
+            Partition partition = null;
+            try {
+                partition = partition(store, n);
+            } finally {
+                install(n, partition);
+            }
+        });
+    }
+
+    private synchronized void install(final int n,
+                                      final Partition partition) {
+        if (partition != null) {
+            // data appended while partitioning are hashed again with new M
+            int size = data.size();
+            reset(partition, n);
+            for (int idx = n; idx < size; idx++) {
+                insert(idx);
+            }
+        }
+        partitioning = false;
+        notifyAll();
+        schedule();
+    }
+
+    private void execute(final Runnable task) {
+        if (executor == null) {
+            task.run();
+        } else {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // partition on the caller rather than never again
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * partition every data into blocks again.
+     * <p>
+     * a partition running on the executor is waited for.
+     */
+    public final synchronized void compact() {
+        while (partitioning) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        VectorStore store = data;
+        int n = store.size();
+        partitioning = true;
+        Partition partition = null;
+        try {
+            partition = partition(store, n);
+        } finally {
+            install(n, partition);
+        }
+    }
+
+    /**
+     * @return number of blocks
+     */
+    public final int blocks() {
+        return state.blocks.length;
+    }
+
+    /**
+     * searches are recorded from every thread, and partitions of the
+     * metrics are the blocks and the tail.
+     *
+     * @return metrics of searches
+     */
+    public final SearchMetrics metrics() {
+        return metrics;
+    }
+
+    private void sizes(final IntConsumer consumer) {
+        State current = state;
+        for (RQALSH block : current.blocks) {
+            consumer.accept(block.size());
+        }
+        if (current.tail.size() > 0) {
+            consumer.accept(current.tail.size());
+        }
+    }
+
+    /**
+     * hash tail into a block ordered by distance of its first data.
+     */
+    private void flush(final State current, final int[] tail) {
+        RQALSH block;
+        synchronized (rd) {
+            block = new RQALSH(hash.fhdim(), m, tail,
+                    tailnorms.toDoubleArray(),
+                    tailsamples.toArray(new IdxVal[0][]), rd, precision);
+        }
+        double start = Double.MAX_VALUE;
+        for (int i = 0; i < taildists.size(); ++i) {
+            start = Math.min(start, taildists.getDouble(i));
+        }
+        double[] starts = current.starts;
+        int at = 0;
+        while (at < starts.length && starts[at] <= start) {
+            ++at;
+        }
+        RQALSH[] blocks = new RQALSH[current.blocks.length + 1];
+        System.arraycopy(current.blocks, 0, blocks, 0, at);
+        blocks[at] = block;
+        System.arraycopy(current.blocks, at, blocks, at + 1,
+                current.blocks.length - at);
+        double[] placed = new double[starts.length + 1];
+        System.arraycopy(starts, 0, placed, 0, at);
+        placed[at] = start;
+        System.arraycopy(starts, at, placed, at + 1, starts.length - at);
+        state = new State(current.M, blocks, placed, Keys.EMPTY,
+                current.overflow);
+        ++flushed;
+        tailsamples.clear();
+        tailnorms.clear();
+        taildists.clear();
+    }
 
-        List<IdxVal> result = new ArrayList<>();
-        while (0 < queue.size()) {
-            IdxVal w = queue.poll();
-            result.add(w);
+    /**
+     * @return distance from centroid when partitioned to current one
+     */
+    private double drift() {
+        double dist = 0.0D;
+        for (int i = 0; i < sum.length; ++i) {
+            dist += Math.pow(sum[i] / count - centroid[i], 2);
         }
-        Collections.reverse(result);
-        return result;
+        return Math.sqrt(dist);
     }
 
-    private IdxVal[] getSampleQuery(final double[] query) {
+    @SuppressWarnings("checkstyle:ParameterName")
+    private IdxVal[] getSampleQuery(final double[] query, final double M) {
         // calc sampleQuery with query transformation
         IdxVal[] sample = hash.query(query);
         double norm = norm(sample);
@@ -155,4 +535,57 @@ public class FHSearch implements Search<FHQuery> {
         }
         return norm;
     }
+
+    /**
+     * Immutable blocks and scanned data searched, replaced as a whole by
+     * appends and partitions.
+     */
+    private static final class State implements Serializable {
+        /**
+         * max l2-norm-sqr of partitioned data.
+         */
+        @SuppressWarnings("checkstyle:MemberName")
+        private final double M;
+        private final RQALSH[] blocks;
+        /**
+         * distance to centroid of the first data of each block.
+         */
+        private final double[] starts;
+        private final Keys tail;
+        private final Keys overflow;
+
+        @SuppressWarnings("checkstyle:ParameterName")
+        private State(final double M, final RQALSH[] blocks,
+                      final double[] starts, final Keys tail,
+                      final Keys overflow) {
+            this.M = M;
+            this.blocks = blocks;
+            this.starts = starts;
+            this.tail = tail;
+            this.overflow = overflow;
+        }
+    }
+
+    /**
+     * Blocks of data partitioned by distance to centroid.
+     */
+    private static final class Partition {
+        @SuppressWarnings("checkstyle:MemberName")
+        private final double M;
+        private final RQALSH[] blocks;
+        private final double[] starts;
+        private final double[] centroid;
+        private final double spread;
+
+        @SuppressWarnings("checkstyle:ParameterName")
+        private Partition(final double M, final RQALSH[] blocks,
+                          final double[] starts, final double[] centroid,
+                          final double spread) {
+            this.M = M;
+            this.blocks = blocks;
+            this.starts = starts;
+            this.centroid = centroid;
+            this.spread = spread;
+        }
+    }
 }
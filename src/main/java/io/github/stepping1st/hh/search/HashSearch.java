@@ -1,26 +1,67 @@
 package io.github.stepping1st.hh.search;
 
 
+import io.github.stepping1st.hh.AppendVectorStore;
+import io.github.stepping1st.hh.Deadline;
+import io.github.stepping1st.hh.DoubleVectorStore;
+import io.github.stepping1st.hh.SnapshotInput;
+import io.github.stepping1st.hh.SnapshotOutput;
+import io.github.stepping1st.hh.VectorStore;
+import io.github.stepping1st.hh.hash.BatchHash;
 import io.github.stepping1st.hh.hash.Hash;
+import io.github.stepping1st.hh.hash.HashSnapshot;
+import io.github.stepping1st.hh.hash.ProbeHash;
+import io.github.stepping1st.hh.metrics.SearchMetrics;
 import io.github.stepping1st.hh.HashBucket;
-import io.github.stepping1st.hh.IdxVal;
 import io.github.stepping1st.hh.Dist;
 import io.github.stepping1st.hh.Query;
+import io.github.stepping1st.hh.SearchResult;
+import io.github.stepping1st.hh.SearchStats;
+import io.github.stepping1st.hh.TopK;
+import io.github.stepping1st.hh.Visited;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.PriorityQueue;
-import java.util.Comparator;
-import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.IntConsumer;
 
 
 /**
  * Hash Neighbor Search.
+ * <p>
+ * vectors can be added and removed after build. added vectors are
+ * searched from delta tables and removed ones are skipped until the
+ * bucket is compacted, which runs when pending updates exceed
+ * hash_search.compact_ratio of the data. compaction runs on the executor
+ * if given.
+ * <p>
+ * search reads an immutable state of the bucket and takes no lock, so it
+ * runs concurrently with updates and compaction. updates are serialized.
  */
 public class HashSearch implements Search<Query> {
+    private static final int BATCH_SIZE = Integer.parseInt(
+            System.getenv().getOrDefault("hash_search.batch_size", "1024")
+    );
+    private static final int BUILD_CHUNK = Integer.parseInt(
+            System.getenv().getOrDefault("hash_search.build_chunk", "65536")
+    );
+    private static final double COMPACT_RATIO = Double.parseDouble(
+            System.getenv().getOrDefault("hash_search.compact_ratio", "0.1")
+    );
     private final HashBucket buckets;
     private final Hash<double[], int[], int[]> hash;
+    private final SearchMetrics metrics = new SearchMetrics(this::sizes);
+    private final transient ExecutorService executor;
+    /**
+     * data store, replaced before the bucket state which adds its rows.
+     */
+    private volatile VectorStore data;
 
     /**
      * @param hash    hash algorithm
@@ -30,48 +71,305 @@ public class HashSearch implements Search<Query> {
     public HashSearch(final Hash<double[], int[], int[]> hash,
                       final double[][] data,
                       final HashBucket buckets) {
+        this(hash, new DoubleVectorStore(data), buckets);
+    }
+
+    /**
+     * @param hash    hash algorithm
+     * @param data    data store
+     * @param buckets bucket
+     */
+    public HashSearch(final Hash<double[], int[], int[]> hash,
+                      final VectorStore data,
+                      final HashBucket buckets) {
+        this.hash = hash;
+        this.buckets = buckets;
+        this.data = data;
+        this.executor = null;
+        int n = data.size();
+        if (hash instanceof BatchHash) {
+            // hash a block of rows at once
+            BatchHash batch = (BatchHash) hash;
+            int[][] sigs = new int[Math.min(BATCH_SIZE, n)][batch.tables()];
+            for (int start = 0; start < n; start += BATCH_SIZE) {
+                int end = Math.min(n, start + BATCH_SIZE);
+                batch.data(data, start, end, sigs);
+                for (int i = start; i < end; i++) {
+                    buckets.insert(i, sigs[i - start]);
+                }
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                int[] sig = hash.data(data.row(i));
+                buckets.insert(i, sig);
+            }
+        }
+        buckets.freeze();
+    }
+
+    /**
+     * build index in parallel.
+     * <p>
+     * rows are hashed by chunk in BATCH_SIZE tasks, and then every table
+     * inserts the chunk in a task of its own. keys of a table are inserted
+     * in the same order as sequential build, so the index is identical to
+     * the sequential one for a seeded bucket.
+     *
+     * @param hash     hash algorithm
+     * @param data     data store
+     * @param buckets  bucket
+     * @param executor executor to build index and compact bucket
+     */
+    public HashSearch(final Hash<double[], int[], int[]> hash,
+                      final VectorStore data,
+                      final HashBucket buckets,
+                      final ExecutorService executor) {
         this.hash = hash;
         this.buckets = buckets;
-        int n = data.length;
-        for (int i = 0; i < n; i++) {
-            int[] sig = hash.data(data[i]);
-            buckets.insert(i, sig);
+        this.data = data;
+        this.executor = executor;
+        int n = data.size();
+        int l = buckets.tables();
+        int[][] sigs = new int[Math.min(BUILD_CHUNK, n)][l];
+        for (int cs = 0; cs < n; cs += BUILD_CHUNK) {
+            int chunk = cs;
+            int ce = Math.min(n, cs + BUILD_CHUNK);
+            List<Callable<Void>> hashing = new ArrayList<>();
+            for (int start = cs; start < ce; start += BATCH_SIZE) {
+                int from = start;
+                int to = Math.min(ce, start + BATCH_SIZE);
+                hashing.add(() -> {
+                    hash(from, to, sigs, chunk);
+                    return null;
+                });
+            }
+            Parallel.invokeAll(executor, hashing);
+            List<Callable<Void>> inserting = new ArrayList<>();
+            for (int j = 0; j < l; j++) {
+                int table = j;
+                inserting.add(() -> {
+                    for (int i = chunk; i < ce; i++) {
+                        buckets.insert(table, i, sigs[i - chunk][table]);
+                    }
+                    return null;
+                });
+            }
+            Parallel.invokeAll(executor, inserting);
+        }
+        buckets.freeze();
+    }
+
+    /**
+     * index read from snapshot.
+     */
+    private HashSearch(final Hash<double[], int[], int[]> hash,
+                       final HashBucket buckets,
+                       final VectorStore data) {
+        this.hash = hash;
+        this.buckets = buckets;
+        this.data = data;
+        this.executor = null;
+    }
+
+    /**
+     * write index to a binary snapshot.
+     * <p>
+     * projections, data and frozen bucket tables are written in a flat
+     * little-endian layout which {@link #open(Path)} maps in place.
+     *
+     * @param path snapshot file
+     * @throws IOException if writing failed
+     */
+    public final synchronized void save(final Path path)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            SnapshotOutput out = new SnapshotOutput(channel);
+            HashSnapshot.write(hash, out);
+            out.writeStore(data);
+            buckets.write(out);
+            out.flush();
+        }
+    }
+
+    /**
+     * add vector to index.
+     *
+     * @param vector vector to add
+     * @return index of added vector
+     */
+    public final synchronized int add(final double[] vector) {
+        if (!(data instanceof AppendVectorStore)) {
+            data = new AppendVectorStore(data);
+        }
+        int idx = ((AppendVectorStore) data).append(vector);
+        // hash the stored vector as build does
+        buckets.insert(idx, hash.data(data.row(idx)));
+        compactIfNeeded();
+        return idx;
+    }
+
+    /**
+     * remove vector from search results.
+     * <p>
+     * the vector is dropped from bucket on compaction, and indexes of
+     * other vectors are not changed.
+     *
+     * @param idx index of vector
+     * @return false if vector is already removed
+     */
+    public final synchronized boolean remove(final int idx) {
+        if (idx < 0 || data.size() <= idx) {
+            throw new IndexOutOfBoundsException("index: " + idx);
+        }
+        boolean removed = buckets.remove(idx);
+        compactIfNeeded();
+        return removed;
+    }
+
+    /**
+     * merge added vectors into bucket tables and drop removed vectors.
+     * <p>
+     * a compaction running on the executor is waited for.
+     */
+    public final synchronized void compact() {
+        buckets.compact();
+    }
+
+    private void compactIfNeeded() {
+        if (COMPACT_RATIO * data.size() < buckets.pending()) {
+            // null while a compaction is running
+            Runnable task = buckets.compaction();
+            if (task != null) {
+                execute(task);
+            }
+        }
+    }
+
+    private void execute(final Runnable task) {
+        if (executor == null) {
+            task.run();
+        } else {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // compact on the caller rather than never again
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * open index from a binary snapshot written by {@link #save(Path)}.
+     * <p>
+     * projections, data and bucket tables are memory mapped and served
+     * from the page cache without deserializing.
+     *
+     * @param path snapshot file
+     * @return read-only index
+     * @throws IOException if reading failed
+     */
+    public static HashSearch open(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            SnapshotInput in = new SnapshotInput(channel);
+            Hash<double[], int[], int[]> hash = HashSnapshot.read(in);
+            VectorStore data = in.readStore();
+            HashBucket buckets = HashBucket.read(in);
+            return new HashSearch(hash, buckets, data);
+        }
+    }
+
+    /**
+     * hashing rows of data into sigs.
+     *
+     * @param from   first row to hash
+     * @param to     last row to hash (exclusive)
+     * @param sigs   signature matrix
+     * @param offset row of data at sigs[0]
+     */
+    private void hash(final int from, final int to, final int[][] sigs,
+                      final int offset) {
+        if (hash instanceof BatchHash) {
+            int[][] block = new int[to - from][];
+            System.arraycopy(sigs, from - offset, block, 0, block.length);
+            ((BatchHash) hash).data(data, from, to, block);
+        } else {
+            for (int i = from; i < to; i++) {
+                int[] sig = hash.data(data.row(i));
+                System.arraycopy(sig, 0, sigs[i - offset], 0, sig.length);
+            }
         }
     }
 
     @Override
-    public final List<IdxVal> nns(final Query param) {
-        double[][] data = param.data();
+    public final SearchResult nns(final Query param) {
         double[] query = param.query();
         int top = param.top();
         int limit = param.limit();
 
-        int[] sig = hash.query(query);
-        PriorityQueue<IdxVal> queue = new PriorityQueue<>(
-                new Comparator<IdxVal>() {
-                    @Override
-                    public int compare(final IdxVal o1, final IdxVal o2) {
-                        return -Double.compare(o1.value(), o2.value());
-                    }
-                });
+        TopK queue = TopK.nearest(top);
         Dist fun = param.dist();
-        buckets.search(sig, limit, new IntConsumer() {
+        SearchStats stats = SearchStats.of(param);
+        long start = stats.clock();
+        IntConsumer consumer = new IntConsumer() {
             @Override
             public void accept(final int key) {
-                double dist = fun.distance(query, data[key]);
-                queue.add(new IdxVal(key, dist));
-                if (top < queue.size()) {
-                    queue.poll();
-                }
+                long verify = stats.clock();
+                // store read after the bucket state holds the key
+                double dist = fun.distance(query, data, key);
+                queue.add(key, dist);
+                stats.verified(verify, 1);
             }
-        });
-        List<IdxVal> result = new ArrayList<>();
-        while (0 < queue.size()) {
-            IdxVal w = queue.poll();
-            result.add(w);
+        };
+        int probes = param.probes();
+        Deadline deadline = Deadline.of(param);
+        long begin = metrics.start();
+        Visited visited = search(query, limit, probes, deadline, stats,
+                consumer);
+        stats.generated(visited);
+        stats.finish(start);
+        metrics.record(begin, visited.visits(), deadline.expired());
+        return queue.result(deadline.expired(), stats);
+    }
+
+    /**
+     * searches are recorded from every thread, and partitions of the
+     * metrics are the buckets.
+     *
+     * @return metrics of searches
+     */
+    public final SearchMetrics metrics() {
+        return metrics;
+    }
+
+    private void sizes(final IntConsumer consumer) {
+        buckets.sizes(consumer);
+    }
+
+    private Visited search(final double[] query, final int limit,
+                           final int probes, final Deadline deadline,
+                           final SearchStats stats,
+                           final IntConsumer consumer) {
+        long start = stats.clock();
+        if (0 < probes && hash instanceof ProbeHash) {
+            // probe neighbouring buckets of the least confident bits
+            ProbeHash probe = (ProbeHash) hash;
+            int l = probe.tables();
+            double[] margins = new double[probe.bits() * l];
+            int[] sig = probe.query(query, margins);
+            int[] tables = new int[l + probes];
+            int[] codes = new int[l + probes];
+            int count = MultiProbe.probes(sig, margins, probe.bits(),
+                    buckets.mask(), probes, tables, codes);
+            stats.hashed(start);
+            return buckets.search(tables, codes, count, limit, deadline,
+                    consumer);
         }
-        Collections.reverse(result);
-        return result;
+        int[] sig = hash.query(query);
+        stats.hashed(start);
+        return buckets.search(sig, limit, deadline, consumer);
     }
 
 }
@@ -0,0 +1,67 @@
+package io.github.stepping1st.hh.search;
+
+
+import java.io.Serializable;
+
+
+/**
+ * Append only keys of a search state.
+ * <p>
+ * keys are a view of the first size slots of an array which appends share
+ * until it is full, and then copy into an array of double capacity. a
+ * slot is written once beyond every view before the state holding the
+ * appended view is published, so views are read without locking. keys
+ * are appended from the latest view by a single writer.
+ */
+final class Keys implements Serializable {
+    private static final int MIN_CAPACITY = 16;
+    /**
+     * no keys.
+     */
+    static final Keys EMPTY = new Keys(new int[0], 0);
+    private final int[] values;
+    private final int size;
+
+    private Keys(final int[] values, final int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * @param value key to append
+     * @return keys with value appended
+     */
+    Keys append(final int value) {
+        int[] grown = values;
+        if (grown.length <= size) {
+            grown = new int[Math.max(MIN_CAPACITY, size << 1)];
+            System.arraycopy(values, 0, grown, 0, size);
+        }
+        grown[size] = value;
+        return new Keys(grown, size + 1);
+    }
+
+    /**
+     * @return number of keys
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param i index of key
+     * @return key at i
+     */
+    int get(final int i) {
+        return values[i];
+    }
+
+    /**
+     * @return copy of keys
+     */
+    int[] toArray() {
+        int[] copy = new int[size];
+        System.arraycopy(values, 0, copy, 0, size);
+        return copy;
+    }
+}
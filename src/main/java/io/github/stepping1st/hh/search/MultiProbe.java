@@ -0,0 +1,128 @@
+package io.github.stepping1st.hh.search;
+
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+
+/**
+ * Multi-probe sequence of hyperplane hash tables.
+ * <p>
+ * a probe flips a set of bits of a table, and is scored by the sum of
+ * margins of the flipped bits. sets are generated in the order of score
+ * by shifting and expanding the sets of bits sorted by margin, so every
+ * set of a table is generated once.
+ */
+final class MultiProbe {
+    private MultiProbe() {
+    }
+
+    /**
+     * write query buckets of every table and then the budget best probes.
+     *
+     * @param sig     signature of query
+     * @param margins margins of m * l bits
+     * @param m       number of bits of a table
+     * @param mask    mask of signature
+     * @param budget  number of extra probes
+     * @param tables  table of each probe, at least l + budget
+     * @param codes   signature of each probe, at least l + budget
+     * @return number of probes
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    static int probes(final int[] sig, final double[] margins, final int m,
+                      final int mask, final int budget,
+                      final int[] tables, final int[] codes) {
+        int l = sig.length;
+        int count = 0;
+        for (int j = 0; j < l; ++j) {
+            tables[count] = j;
+            codes[count] = sig[j];
+            ++count;
+        }
+
+        // bit shifts of a table sorted by margin, masked bits are dropped
+        int[][] shifts = new int[l][];
+        double[][] sorted = new double[l][];
+        PriorityQueue<Perturbation> heap = new PriorityQueue<>();
+        for (int j = 0; j < l; ++j) {
+            int offset = j * m;
+            int[] order = new int[m];
+            int size = 0;
+            for (int b = 0; b < m; ++b) {
+                int shift = m - 1 - b;
+                if ((mask >>> shift & 1) == 1) {
+                    order[size++] = b;
+                }
+            }
+            int[] bits = Arrays.copyOf(order, size);
+            IntArrays.quickSort(bits, (b1, b2) -> Double.compare(
+                    margins[offset + b1], margins[offset + b2]));
+            shifts[j] = new int[size];
+            sorted[j] = new double[size];
+            for (int k = 0; k < size; ++k) {
+                shifts[j][k] = m - 1 - bits[k];
+                sorted[j][k] = margins[offset + bits[k]];
+            }
+            if (0 < size) {
+                heap.add(new Perturbation(sorted[j][0], j, 1, 0));
+            }
+        }
+
+        int total = l + budget;
+        while (count < total && !heap.isEmpty()) {
+            Perturbation p = heap.poll();
+            int[] shift = shifts[p.table];
+            double[] margin = sorted[p.table];
+            int code = sig[p.table];
+            for (int k = 0; k <= p.last; ++k) {
+                if ((p.set >>> k & 1) == 1) {
+                    code ^= 1 << shift[k];
+                }
+            }
+            tables[count] = p.table;
+            codes[count] = code;
+            ++count;
+
+            int next = p.last + 1;
+            if (next < shift.length) {
+                heap.add(new Perturbation(
+                        p.score - margin[p.last] + margin[next], p.table,
+                        p.set & ~(1 << p.last) | 1 << next, next));
+                heap.add(new Perturbation(
+                        p.score + margin[next], p.table,
+                        p.set | 1 << next, next));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * set of flipped bits of a table.
+     */
+    private static final class Perturbation
+            implements Comparable<Perturbation> {
+        private final double score;
+        private final int table;
+        /**
+         * k-th bit is set if the k-th smallest margin bit is flipped.
+         */
+        private final int set;
+        private final int last;
+
+        private Perturbation(final double score, final int table,
+                             final int set, final int last) {
+            this.score = score;
+            this.table = table;
+            this.set = set;
+            this.last = last;
+        }
+
+        @Override
+        public int compareTo(final Perturbation o) {
+            return Double.compare(score, o.score);
+        }
+    }
+}
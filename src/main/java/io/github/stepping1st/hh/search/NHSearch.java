@@ -1,91 +1,500 @@
 package io.github.stepping1st.hh.search;
 
 
-import io.github.stepping1st.hh.IdxVal;
+import io.github.stepping1st.hh.AppendVectorStore;
+import io.github.stepping1st.hh.Deadline;
+import io.github.stepping1st.hh.DoubleVectorStore;
 import io.github.stepping1st.hh.IntNDArray;
 import io.github.stepping1st.hh.Query;
+import io.github.stepping1st.hh.SearchResult;
+import io.github.stepping1st.hh.SearchStats;
+import io.github.stepping1st.hh.TopK;
 import io.github.stepping1st.hh.SortedLCCS;
+import io.github.stepping1st.hh.VectorStore;
+import io.github.stepping1st.hh.Visited;
 import io.github.stepping1st.hh.hash.Hash;
+import io.github.stepping1st.hh.hash.NHHash;
+import io.github.stepping1st.hh.metrics.SearchMetrics;
 import io.github.stepping1st.hh.Dist;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
-import java.util.List;
+import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.PriorityQueue;
-import java.util.Comparator;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.IntConsumer;
 
 
 /**
  * Nearest Hyperplane(NH) Search based on LCCS Bucketing Framework.
+ * <p>
+ * appended data are scanned from a buffer until nh_search.buffer_size of
+ * them are sorted into a delta run, which is searched along with the main
+ * run. more than nh_search.max_runs delta runs are merged into one, and
+ * into the main run once they hold nh_search.main_ratio of it. merges run
+ * on the executor if given.
+ * <p>
+ * appended data are normalized by the max norm M of the main run. data
+ * exceeding M can't be hashed without changing every signature, so they
+ * are scanned exactly, and nh_search.overflow_size of them rebuild all
+ * runs with a new M.
+ * <p>
+ * search reads an immutable state of runs, and vectors of the state are
+ * published by the append store before the state, so search and merge
+ * run concurrently with append without locking. appends are serialized.
  */
 public class NHSearch implements Search<Query> {
-    private final Hash<double[][], int[][], int[]> hash;
-    private final SortedLCCS bucketerp;
+    private static final int MIN_RUN_SIZE = 2;
+    private static final int BUFFER_SIZE = Math.max(MIN_RUN_SIZE,
+            Integer.parseInt(System.getenv()
+                    .getOrDefault("nh_search.buffer_size", "1024")));
+    private static final int MAX_RUNS = Integer.parseInt(
+            System.getenv().getOrDefault("nh_search.max_runs", "8")
+    );
+    private static final double MAIN_RATIO = Double.parseDouble(
+            System.getenv().getOrDefault("nh_search.main_ratio", "0.25")
+    );
+    private static final int OVERFLOW_SIZE = Integer.parseInt(
+            System.getenv().getOrDefault("nh_search.overflow_size", "1024")
+    );
+    private final Hash<VectorStore, int[][], int[]> hash;
     private final int m;
+    private final transient ExecutorService executor;
+    private volatile VectorStore data;
+    private volatile State state;
+    private final SearchMetrics metrics = new SearchMetrics(this::sizes);
+    /**
+     * max l2-norm-sqr normalizing appended data.
+     */
+    @SuppressWarnings("checkstyle:MemberName")
+    private double M;
+    /**
+     * signatures of buffered data.
+     */
+    private final List<int[]> pending = new ArrayList<>();
+    /**
+     * true while a merge or rebuild runs, not restored so that a copy
+     * taken during one merges again.
+     */
+    private transient boolean merging = false;
 
     /**
      * @param hash hash
      * @param m    single hasher of the compond hasher
      * @param data input data
      */
-    public NHSearch(final Hash<double[][], int[][], int[]> hash,
+    public NHSearch(final Hash<VectorStore, int[][], int[]> hash,
                     final int m,
                     final double[][] data) {
+        this(hash, m, new DoubleVectorStore(data));
+    }
+
+    /**
+     * @param hash hash
+     * @param m    single hasher of the compond hasher
+     * @param data data store
+     */
+    public NHSearch(final Hash<VectorStore, int[][], int[]> hash,
+                    final int m,
+                    final VectorStore data) {
+        this(hash, m, data, null);
+    }
+
+    /**
+     * @param hash     hash
+     * @param m        single hasher of the compond hasher
+     * @param data     data store
+     * @param executor executor to merge runs, null to merge on append
+     */
+    public NHSearch(final Hash<VectorStore, int[][], int[]> hash,
+                    final int m,
+                    final VectorStore data,
+                    final ExecutorService executor) {
         this.hash = hash;
         this.m = m;
-        int n = data.length;
-        IntNDArray arr = new IntNDArray(new int[]{n, m});
-        int[][] sigs = hash.data(data);
-        for (int i = 0; i < n; i++) {
-            int[] sig = sigs[i];
-            for (int j = 0; j < m; j++) {
-                arr.set(sig[j], i, j);
-            }
-
+        this.data = data;
+        this.executor = executor;
+        int[][] sigs;
+        if (hash instanceof NHHash) {
+            NHHash.Transform transform = ((NHHash) hash).transform(data);
+            sigs = transform.sigs();
+            this.M = transform.M();
+        } else {
+            sigs = hash.data(data);
+            this.M = Double.NaN;
         }
-        // sort arr data index by value per dim
-        this.bucketerp = new SortedLCCS(1, arr);
+        this.state = new State(new Run[]{run(null, sigs)}, Keys.EMPTY,
+                Keys.EMPTY);
     }
 
     @Override
-    public final List<IdxVal> nns(final Query param) {
-        double[][] data = param.data();
+    public final SearchResult nns(final Query param) {
         double[] query = param.query();
         int top = param.top();
         Dist fun = param.dist();
 
-        PriorityQueue<IdxVal> queue = new PriorityQueue<>(
-                new Comparator<IdxVal>() {
-                    @Override
-                    public int compare(final IdxVal o1, final IdxVal o2) {
-                        return -Double.compare(o1.value(), o2.value());
-                    }
-                });
+        TopK queue = TopK.nearest(top);
+        Deadline deadline = Deadline.of(param);
+        SearchStats stats = SearchStats.of(param);
+        long start = stats.clock();
+        long begin = metrics.start();
+        long candidates = 0L;
+        // state before data, so data holds every index of state
+        State current = state;
+        VectorStore store = data;
+        IntConsumer consumer = new IntConsumer() {
+            @Override
+            public void accept(final int key) {
+                long verify = stats.clock();
+                double dist = fun.distance(query, store, key);
+                queue.add(key, dist);
+                stats.verified(verify, 1);
+            }
+        };
 
         int[] sigs = hash.query(query);
+        stats.hashed(start);
         int step = (top + m - 1) / m;
 
         // binary search signature from sorted index.
         // the more similar the signatures, the better the search results.
-        bucketerp.search(step, sigs, new IntConsumer() {
-            @Override
-            public void accept(final int key) {
-                double dist = fun.distance(query, data[key]);
-                queue.add(new IdxVal(key, dist));
-                if (top < queue.size()) {
-                    queue.poll();
-                }
+        for (Run run : current.runs) {
+            if (deadline.expired()) {
+                break;
+            }
+            Visited visited = run.search(step, sigs, deadline, consumer);
+            stats.generated(visited);
+            candidates += visited.visits();
+        }
+        int scanned = scan(current.buffer, deadline, consumer)
+                + scan(current.overflow, deadline, consumer);
+        stats.generated(scanned, scanned);
+        candidates += scanned;
+
+        stats.finish(start);
+        metrics.record(begin, candidates, deadline.expired());
+        return queue.result(deadline.expired(), stats);
+    }
+
+    /**
+     * @return number of scanned keys
+     */
+    private static int scan(final Keys keys, final Deadline deadline,
+                            final IntConsumer consumer) {
+        int i = 0;
+        for (; i < keys.size() && !deadline.check(); i++) {
+            consumer.accept(keys.get(i));
+        }
+        return i;
+    }
+
+    /**
+     * append data to search.
+     *
+     * @param vector vector to append
+     * @return index of appended data
+     */
+    public final synchronized int add(final double[] vector) {
+        if (!(hash instanceof NHHash)) {
+            throw new UnsupportedOperationException(
+                    "append needs NHHash: " + hash.getClass().getName());
+        }
+        VectorStore store = data;
+        if (!(store instanceof AppendVectorStore)) {
+            store = new AppendVectorStore(store);
+            data = store;
+        }
+        int idx = ((AppendVectorStore) store).append(vector);
+        insert(idx);
+        schedule();
+        return idx;
+    }
+
+    /**
+     * @return number of sorted runs including the main run
+     */
+    public final int runs() {
+        return state.runs.length;
+    }
+
+    /**
+     * searches are recorded from every thread, and partitions of the
+     * metrics are the runs and the buffer.
+     *
+     * @return metrics of searches
+     */
+    public final SearchMetrics metrics() {
+        return metrics;
+    }
+
+    private void sizes(final IntConsumer consumer) {
+        State current = state;
+        for (Run run : current.runs) {
+            consumer.accept(run.size());
+        }
+        if (current.buffer.size() > 0) {
+            consumer.accept(current.buffer.size());
+        }
+    }
+
+    /**
+     * hash data into buffer, or overflow if it exceeds M.
+     */
+    private void insert(final int idx) {
+        // hash the stored vector as build does
+        int[] sig = ((NHHash) hash).data(data.row(idx), M);
+        State current = state;
+        if (sig == null) {
+            state = new State(current.runs, current.buffer,
+                    current.overflow.append(idx));
+        } else if (pending.size() + 1 < BUFFER_SIZE) {
+            pending.add(sig);
+            state = new State(current.runs, current.buffer.append(idx),
+                    current.overflow);
+        } else {
+            // sort buffer into a delta run
+            pending.add(sig);
+            int[] ids = current.buffer.append(idx).toArray();
+            Run run = run(ids, pending.toArray(new int[0][]));
+            pending.clear();
+            Run[] runs = Arrays.copyOf(current.runs, current.runs.length + 1);
+            runs[current.runs.length] = run;
+            state = new State(runs, Keys.EMPTY, current.overflow);
+        }
+    }
+
+    /**
+     * start rebuild or merge if needed and no merge is running.
+     */
+    private void schedule() {
+        if (merging) {
+            return;
+        }
+        if (OVERFLOW_SIZE <= state.overflow.size()) {
+            rebuild();
+        } else if (MAX_RUNS < state.runs.length - 1) {
+            merge();
+        }
+    }
+
+    /**
+     * merge delta runs, and the main run if delta runs are large enough.
+     */
+    private void merge() {
+        Run[] runs = state.runs;
+        long deltas = 0;
+        for (int i = 1; i < runs.length; i++) {
+            deltas += runs[i].size();
+        }
+        Run[] merged = runs;
+        if (deltas < MAIN_RATIO * runs[0].size()) {
+            merged = Arrays.copyOfRange(runs, 1, runs.length);
+        }
+        Run[] targets = merged;
+        merging = true;
+        execute(() -> {
+            Run result = null;
+            try {
+                result = combine(targets);
+            } finally {
+                install(targets, result);
+            }
+        });
+    }
+
+    private synchronized void install(final Run[] merged, final Run result) {
+        merging = false;
+        if (result != null) {
+            List<Run> runs = new ArrayList<>(Arrays.asList(state.runs));
+            int at = runs.indexOf(merged[0]);
+            runs.removeAll(Arrays.asList(merged));
+            runs.add(at, result);
+            State current = state;
+            state = new State(runs.toArray(new Run[0]), current.buffer,
+                    current.overflow);
+        }
+        schedule();
+    }
+
+    /**
+     * rehash every data with a new M.
+     */
+    private void rebuild() {
+        NHHash nh = (NHHash) hash;
+        VectorStore store = data;
+        int n = store.size();
+        merging = true;
+        execute(() -> {
+            NHHash.Transform transform = null;
+            try {
+                transform = nh.transform(store, n);
+            } finally {
+                install(n, transform);
             }
         });
+    }
 
-        List<IdxVal> result = new ArrayList<>();
-        while (0 < queue.size()) {
-            IdxVal w = queue.poll();
-            result.add(w);
+    private synchronized void install(final int n,
+                                      final NHHash.Transform transform) {
+        if (transform != null) {
+            // data appended while rebuilding are hashed again with new M
+            State current = state;
+            int[] appended = appended(current, n);
+            M = transform.M();
+            pending.clear();
+            state = new State(new Run[]{run(null, transform.sigs())},
+                    Keys.EMPTY, Keys.EMPTY);
+            for (int idx : appended) {
+                insert(idx);
+            }
         }
-        Collections.reverse(result);
-        return result;
+        merging = false;
+        schedule();
     }
 
+    private void execute(final Runnable task) {
+        if (executor == null) {
+            task.run();
+        } else {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // merge on the caller rather than never again
+                task.run();
+            }
+        }
+    }
+
+    /**
+     * @return sorted indexes of state not less than n
+     */
+    private static int[] appended(final State current, final int n) {
+        List<int[]> groups = new ArrayList<>();
+        for (Run run : current.runs) {
+            if (run.ids != null) {
+                groups.add(run.ids);
+            }
+        }
+        groups.add(current.buffer.toArray());
+        groups.add(current.overflow.toArray());
+        IntArrayList found = new IntArrayList();
+        for (int[] ids : groups) {
+            for (int idx : ids) {
+                if (n <= idx) {
+                    found.add(idx);
+                }
+            }
+        }
+        int[] sorted = found.toIntArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * sort signatures of runs into a single run.
+     */
+    private Run combine(final Run[] runs) {
+        int n = 0;
+        for (Run run : runs) {
+            n += run.size();
+        }
+        int[] ids = new int[n];
+        IntNDArray arr = new IntNDArray(new int[]{n, m});
+        int pos = 0;
+        boolean identity = true;
+        for (Run run : runs) {
+            int size = run.size();
+            System.arraycopy(run.sigs.values(), 0, arr.values(), pos * m,
+                    size * m);
+            for (int i = 0; i < size; i++) {
+                ids[pos + i] = run.id(i);
+                identity &= ids[pos + i] == pos + i;
+            }
+            pos += size;
+        }
+        if (identity) {
+            ids = null;
+        }
+        return new Run(ids, arr);
+    }
+
+    private Run run(final int[] ids, final int[][] sigs) {
+        int n = sigs.length;
+        IntNDArray arr = new IntNDArray(new int[]{n, m});
+        for (int i = 0; i < n; i++) {
+            int[] sig = sigs[i];
+            for (int j = 0; j < m; j++) {
+                arr.set(sig[j], i, j);
+            }
+
+        }
+        return new Run(ids, arr);
+    }
+
+    /**
+     * Sorted run of signatures.
+     */
+    private static final class Run implements Serializable {
+        /**
+         * index of data of each row, null if row is the index.
+         */
+        private final int[] ids;
+        private final IntNDArray sigs;
+        private final SortedLCCS bucketerp;
+
+        /**
+         * @param ids  index of data of each row, null if row is the index
+         * @param sigs signatures of rows
+         */
+        private Run(final int[] ids, final IntNDArray sigs) {
+            this.ids = ids;
+            this.sigs = sigs;
+            // sort arr data index by value per dim
+            this.bucketerp = new SortedLCCS(1, sigs);
+        }
+
+        private int size() {
+            return sigs.dims()[0];
+        }
+
+        private int id(final int row) {
+            if (ids == null) {
+                return row;
+            }
+            return ids[row];
+        }
+
+        private Visited search(final int step, final int[] query,
+                               final Deadline deadline,
+                               final IntConsumer consumer) {
+            if (ids == null) {
+                return bucketerp.search(step, query, deadline, consumer);
+            }
+            return bucketerp.search(step, query, deadline,
+                    row -> consumer.accept(ids[row]));
+        }
+    }
+
+    /**
+     * Immutable runs and scanned data.
+     */
+    private static final class State implements Serializable {
+        private final Run[] runs;
+        private final Keys buffer;
+        private final Keys overflow;
+
+        /**
+         * @param runs     sorted runs, the main run first
+         * @param buffer   appended data not yet sorted
+         * @param overflow appended data exceeding M
+         */
+        private State(final Run[] runs, final Keys buffer,
+                      final Keys overflow) {
+            this.runs = runs;
+            this.buffer = buffer;
+            this.overflow = overflow;
+        }
+    }
 }
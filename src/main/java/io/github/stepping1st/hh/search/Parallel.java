@@ -0,0 +1,91 @@
+package io.github.stepping1st.hh.search;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+
+/**
+ * Parallel task utils.
+ */
+final class Parallel {
+    private static final int MAP_CHUNK = Integer.parseInt(
+            System.getenv().getOrDefault("parallel.map_chunk", "8")
+    );
+
+    private Parallel() {
+    }
+
+    /**
+     * apply f to every input on executor.
+     * <p>
+     * consecutive inputs are grouped into chunks of a task, so that the
+     * scheduling cost is shared by the chunk.
+     *
+     * @param executor executor to run tasks
+     * @param inputs   inputs
+     * @param f        function
+     * @param <T>      input type
+     * @param <R>      result type
+     * @return results in the order of inputs
+     */
+    static <T, R> List<R> map(final ExecutorService executor,
+                              final List<T> inputs,
+                              final Function<T, R> f) {
+        int n = inputs.size();
+        List<Callable<List<R>>> tasks = new ArrayList<>();
+        for (int start = 0; start < n; start += MAP_CHUNK) {
+            int end = Math.min(n, start + MAP_CHUNK);
+            List<T> chunk = inputs.subList(start, end);
+            tasks.add(() -> {
+                List<R> results = new ArrayList<>(chunk.size());
+                for (T input : chunk) {
+                    results.add(f.apply(input));
+                }
+                return results;
+            });
+        }
+        List<R> results = new ArrayList<>(n);
+        for (List<R> chunk : invokeAll(executor, tasks)) {
+            results.addAll(chunk);
+        }
+        return results;
+    }
+
+    /**
+     * run all tasks and wait for them.
+     *
+     * @param executor executor to run tasks
+     * @param tasks    tasks
+     * @param <T>      result type
+     * @return results in the order of tasks
+     */
+    static <T> List<T> invokeAll(final ExecutorService executor,
+                                 final List<Callable<T>> tasks) {
+        try {
+            List<Future<T>> futures = executor.invokeAll(tasks);
+            List<T> results = new ArrayList<>(futures.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -2,14 +2,19 @@ package io.github.stepping1st.hh.search;
 
 
 import io.github.stepping1st.hh.Query;
-import io.github.stepping1st.hh.IdxVal;
+import io.github.stepping1st.hh.SearchResult;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 
 /**
  * Search data.
+ * <p>
+ * searchers of this package keep their query scratch per thread, so a
+ * single instance can serve {@link #nns(Query)} from many threads
+ * concurrently, also while searchers supporting updates are updated.
  *
  * @param <T> query type
  */
@@ -17,9 +22,27 @@ public interface Search<T extends Query> extends Serializable {
 
     /**
      * nearest neighbor search.
+     * <p>
+     * a query with a deadline returns the best elements found until the
+     * deadline, and the result is marked as expired if it was cut short.
      *
      * @param param param object
      * @return found element
      */
-    List<IdxVal> nns(T param);
+    SearchResult nns(T param);
+
+    /**
+     * batch nearest neighbor search on executor.
+     * <p>
+     * queries are answered concurrently by {@link #nns(Query)}, and every
+     * worker thread reuses its own scratch buffers.
+     *
+     * @param params   param objects
+     * @param executor executor to search
+     * @return found elements in the order of params
+     */
+    default List<SearchResult> nns(final List<T> params,
+                                   final ExecutorService executor) {
+        return Parallel.map(executor, params, this::nns);
+    }
 }
@@ -0,0 +1,189 @@
+package io.github.stepping1st.hh;
+
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * Vectorized dot product kernel based on jdk.incubator.vector.
+ * <p>
+ * the main loop is unrolled by four independent accumulators
+ * and the tail is handled by a masked load.
+ */
+final class VectorKernel implements Kernel {
+    private static final VectorSpecies<Double> SPECIES =
+            DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> HALF = VectorSpecies.of(
+            float.class,
+            VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+    private static final int UNROLL = 4;
+
+    @Override
+    public double dot(final double[] a, final int astart,
+                      final double[] b, final int bstart,
+                      final int len) {
+        int lanes = SPECIES.length();
+        DoubleVector acc0 = DoubleVector.zero(SPECIES);
+        DoubleVector acc1 = DoubleVector.zero(SPECIES);
+        DoubleVector acc2 = DoubleVector.zero(SPECIES);
+        DoubleVector acc3 = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = len - UNROLL * lanes; i <= bound;
+             i += UNROLL * lanes) {
+            acc0 = load(a, astart + i).fma(load(b, bstart + i), acc0);
+            acc1 = load(a, astart + i + lanes)
+                    .fma(load(b, bstart + i + lanes), acc1);
+            acc2 = load(a, astart + i + 2 * lanes)
+                    .fma(load(b, bstart + i + 2 * lanes), acc2);
+            acc3 = load(a, astart + i + 3 * lanes)
+                    .fma(load(b, bstart + i + 3 * lanes), acc3);
+        }
+        for (int bound = len - lanes; i <= bound; i += lanes) {
+            acc0 = load(a, astart + i).fma(load(b, bstart + i), acc0);
+        }
+        if (i < len) {
+            VectorMask<Double> mask = SPECIES.indexInRange(i, len);
+            DoubleVector va = DoubleVector.fromArray(
+                    SPECIES, a, astart + i, mask);
+            DoubleVector vb = DoubleVector.fromArray(
+                    SPECIES, b, bstart + i, mask);
+            acc1 = va.fma(vb, acc1);
+        }
+        return acc0.add(acc1).add(acc2.add(acc3))
+                .reduceLanes(VectorOperators.ADD);
+    }
+
+    @Override
+    public double dot(final double[] a, final int astart,
+                      final float[] b, final int bstart,
+                      final int len) {
+        int lanes = SPECIES.length();
+        DoubleVector acc0 = DoubleVector.zero(SPECIES);
+        DoubleVector acc1 = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = len - 2 * lanes; i <= bound; i += 2 * lanes) {
+            acc0 = load(a, astart + i).fma(load(b, bstart + i), acc0);
+            acc1 = load(a, astart + i + lanes)
+                    .fma(load(b, bstart + i + lanes), acc1);
+        }
+        for (int bound = len - lanes; i <= bound; i += lanes) {
+            acc0 = load(a, astart + i).fma(load(b, bstart + i), acc0);
+        }
+        if (i < len) {
+            VectorMask<Double> mask = SPECIES.indexInRange(i, len);
+            DoubleVector va = DoubleVector.fromArray(
+                    SPECIES, a, astart + i, mask);
+            DoubleVector vb = (DoubleVector) FloatVector.fromArray(
+                    HALF, b, bstart + i, mask.cast(HALF))
+                    .convertShape(VectorOperators.F2D, SPECIES, 0);
+            acc1 = va.fma(vb, acc1);
+        }
+        return acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+    }
+
+    @Override
+    public double bilinear(final double[] a, final int astart,
+                           final double[] b, final int bstart,
+                           final int len) {
+        int lanes = SPECIES.length();
+        int cstart = bstart + len;
+        DoubleVector acc0 = DoubleVector.zero(SPECIES);
+        DoubleVector acc1 = DoubleVector.zero(SPECIES);
+        DoubleVector acc2 = DoubleVector.zero(SPECIES);
+        DoubleVector acc3 = DoubleVector.zero(SPECIES);
+        DoubleVector cacc0 = DoubleVector.zero(SPECIES);
+        DoubleVector cacc1 = DoubleVector.zero(SPECIES);
+        DoubleVector cacc2 = DoubleVector.zero(SPECIES);
+        DoubleVector cacc3 = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = len - UNROLL * lanes; i <= bound;
+             i += UNROLL * lanes) {
+            DoubleVector va0 = load(a, astart + i);
+            DoubleVector va1 = load(a, astart + i + lanes);
+            DoubleVector va2 = load(a, astart + i + 2 * lanes);
+            DoubleVector va3 = load(a, astart + i + 3 * lanes);
+            acc0 = va0.fma(load(b, bstart + i), acc0);
+            acc1 = va1.fma(load(b, bstart + i + lanes), acc1);
+            acc2 = va2.fma(load(b, bstart + i + 2 * lanes), acc2);
+            acc3 = va3.fma(load(b, bstart + i + 3 * lanes), acc3);
+            cacc0 = va0.fma(load(b, cstart + i), cacc0);
+            cacc1 = va1.fma(load(b, cstart + i + lanes), cacc1);
+            cacc2 = va2.fma(load(b, cstart + i + 2 * lanes), cacc2);
+            cacc3 = va3.fma(load(b, cstart + i + 3 * lanes), cacc3);
+        }
+        for (int bound = len - lanes; i <= bound; i += lanes) {
+            DoubleVector va = load(a, astart + i);
+            acc0 = va.fma(load(b, bstart + i), acc0);
+            cacc0 = va.fma(load(b, cstart + i), cacc0);
+        }
+        if (i < len) {
+            VectorMask<Double> mask = SPECIES.indexInRange(i, len);
+            DoubleVector va = DoubleVector.fromArray(
+                    SPECIES, a, astart + i, mask);
+            acc1 = va.fma(DoubleVector.fromArray(
+                    SPECIES, b, bstart + i, mask), acc1);
+            cacc1 = va.fma(DoubleVector.fromArray(
+                    SPECIES, b, cstart + i, mask), cacc1);
+        }
+        double v1 = acc0.add(acc1).add(acc2.add(acc3))
+                .reduceLanes(VectorOperators.ADD);
+        double v2 = cacc0.add(cacc1).add(cacc2.add(cacc3))
+                .reduceLanes(VectorOperators.ADD);
+        return v1 * v2;
+    }
+
+    @Override
+    public double bilinear(final double[] a, final int astart,
+                           final float[] b, final int bstart,
+                           final int len) {
+        int lanes = SPECIES.length();
+        int cstart = bstart + len;
+        DoubleVector acc0 = DoubleVector.zero(SPECIES);
+        DoubleVector acc1 = DoubleVector.zero(SPECIES);
+        DoubleVector cacc0 = DoubleVector.zero(SPECIES);
+        DoubleVector cacc1 = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = len - 2 * lanes; i <= bound; i += 2 * lanes) {
+            DoubleVector va0 = load(a, astart + i);
+            DoubleVector va1 = load(a, astart + i + lanes);
+            acc0 = va0.fma(load(b, bstart + i), acc0);
+            acc1 = va1.fma(load(b, bstart + i + lanes), acc1);
+            cacc0 = va0.fma(load(b, cstart + i), cacc0);
+            cacc1 = va1.fma(load(b, cstart + i + lanes), cacc1);
+        }
+        for (int bound = len - lanes; i <= bound; i += lanes) {
+            DoubleVector va = load(a, astart + i);
+            acc0 = va.fma(load(b, bstart + i), acc0);
+            cacc0 = va.fma(load(b, cstart + i), cacc0);
+        }
+        if (i < len) {
+            VectorMask<Double> mask = SPECIES.indexInRange(i, len);
+            VectorMask<Float> half = mask.cast(HALF);
+            DoubleVector va = DoubleVector.fromArray(
+                    SPECIES, a, astart + i, mask);
+            acc1 = va.fma((DoubleVector) FloatVector.fromArray(
+                    HALF, b, bstart + i, half)
+                    .convertShape(VectorOperators.F2D, SPECIES, 0), acc1);
+            cacc1 = va.fma((DoubleVector) FloatVector.fromArray(
+                    HALF, b, cstart + i, half)
+                    .convertShape(VectorOperators.F2D, SPECIES, 0), cacc1);
+        }
+        double v1 = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        double v2 = cacc0.add(cacc1).reduceLanes(VectorOperators.ADD);
+        return v1 * v2;
+    }
+
+    private static DoubleVector load(final double[] a, final int pos) {
+        return DoubleVector.fromArray(SPECIES, a, pos);
+    }
+
+    private static DoubleVector load(final float[] a, final int pos) {
+        return (DoubleVector) FloatVector.fromArray(HALF, a, pos)
+                .convertShape(VectorOperators.F2D, SPECIES, 0);
+    }
+}
@@ -13,6 +13,8 @@ import io.github.stepping1st.hh.column.Series;
 import io.github.stepping1st.hh.hash.BHHash;
 import io.github.stepping1st.hh.hash.EHHash;
 import io.github.stepping1st.hh.hash.FHHash;
+import io.github.stepping1st.hh.hash.Hash;
+import io.github.stepping1st.hh.hash.LowRankEHHash;
 import io.github.stepping1st.hh.search.FHSearch;
 import io.github.stepping1st.hh.search.HashSearch;
 import io.github.stepping1st.hh.hash.MHHash;
@@ -29,6 +31,9 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -55,6 +60,7 @@ public class Runner {
         base.put("limit", prop.limit());
         base.put("(m)single_hasher", prop.singleHasher());
         base.put("(M)num_proj_hash", prop.M());
+        base.put("(r)rank", prop.rank());
         base.put(String.format("(%s)tables", prop.tablesOpt()), prop.tables());
         base.put("(b)interval_ratio", prop.b());
         base.put("(s)scale_dim", prop.s());
@@ -68,6 +74,10 @@ public class Runner {
         base.put("seed", prop.seed());
         base.put("name", prop.name());
         base.put("eval_dist", prop.evalDist());
+        base.put("storage_precision", prop.precision());
+        base.put("projection", prop.projection());
+        base.put("threads", prop.threads());
+        base.put("probes", prop.probes());
         base.put("ms_time", start);
         base.put("data_size", data.length);
         for (Row<Object> m : metas) {
@@ -96,51 +106,51 @@ public class Runner {
         JDKRandomGenerator rg = new JDKRandomGenerator();
         rg.setSeed(prop.seed());
         RandomData rd = new RandomDataImpl(rg);
+        Precision precision = prop.precision();
 
         if (run.equals("BH")) {
             return evaluate(map(queries, new Function<double[], Query>() {
                 @Override
                 public Query apply(double[] query) {
-                    return new Query(query, data, prop.topK(), prop.limit(), Dist.ABS_DOT);
+                    return new Query(query, data, prop.topK(), prop.limit(), Dist.ABS_DOT, prop.probes());
                 }
             }), new Supplier<Search<Query>>() {
                 @Override
                 public Search<Query> get() {
-                    BHHash hash = new BHHash(dim, prop.singleHasher(), prop.tables(), rd);
-                    HashBucket bucket = new HashBucket(data.length, prop.tables());
-                    return new HashSearch(hash, data, bucket);
+                    BHHash hash = new BHHash(dim, prop.singleHasher(), prop.tables(), rd, precision, prop.projection());
+                    return hashSearch(prop, hash, precision.of(data));
                 }
-            }, prop);
+            }, Runner::param, prop);
         }
         if (run.equals("MH")) {
             return evaluate(map(queries, new Function<double[], Query>() {
                 @Override
                 public Query apply(double[] query) {
-                    return new Query(query, data, prop.topK(), prop.limit(), Dist.ABS_DOT);
+                    return new Query(query, data, prop.topK(), prop.limit(), Dist.ABS_DOT, prop.probes());
                 }
             }), new Supplier<Search<Query>>() {
                 @Override
                 public Search<Query> get() {
-                    MHHash hash = new MHHash(dim, prop.singleHasher(), prop.tables(), prop.M(), rd);
-                    HashBucket bucket = new HashBucket(data.length, prop.tables());
-                    return new HashSearch(hash, data, bucket);
+                    MHHash hash = new MHHash(dim, prop.singleHasher(), prop.tables(), prop.M(), rd, precision, prop.projection());
+                    return hashSearch(prop, hash, precision.of(data));
                 }
-            }, prop);
+            }, Runner::param, prop);
         }
         if (run.equals("EH")) {
             return evaluate(map(queries, new Function<double[], Query>() {
                 @Override
                 public Query apply(double[] query) {
-                    return new Query(query, data, prop.topK(), prop.limit(), Dist.ABS_DOT);
+                    return new Query(query, data, prop.topK(), prop.limit(), Dist.ABS_DOT, prop.probes());
                 }
             }), new Supplier<Search<Query>>() {
                 @Override
                 public Search<Query> get() {
-                    EHHash hash = new EHHash(dim, prop.singleHasher(), prop.tables(), rd);
-                    HashBucket bucket = new HashBucket(data.length, prop.tables());
-                    return new HashSearch(hash, data, bucket);
+                    Hash<double[], int[], int[]> hash = prop.rank() == null
+                            ? new EHHash(dim, prop.singleHasher(), prop.tables(), rd, precision, prop.projection())
+                            : new LowRankEHHash(dim, prop.singleHasher(), prop.tables(), prop.rank(), rd, precision);
+                    return hashSearch(prop, hash, precision.of(data));
                 }
-            }, prop);
+            }, Runner::param, prop);
         }
         if (run.equals("NH")) {
             return evaluate(map(queries, new Function<double[], Query>() {
@@ -151,10 +161,10 @@ public class Runner {
             }), new Supplier<Search<Query>>() {
                 @Override
                 public Search<Query> get() {
-                    NHHash hash = new NHHash(dim, prop.singleHasher(), prop.s(), prop.w(), rd);
-                    return new NHSearch(hash, prop.singleHasher(), data);
+                    NHHash hash = new NHHash(dim, prop.singleHasher(), prop.s(), prop.w(), rd, precision);
+                    return new NHSearch(hash, prop.singleHasher(), precision.of(data));
                 }
-            }, prop);
+            }, Runner::param, prop);
         }
         if (run.equals("FH")) {
             return evaluate(map(queries, new Function<double[], FHQuery>() {
@@ -166,15 +176,39 @@ public class Runner {
                 @Override
                 public Search<FHQuery> get() {
                     FHHash hash = new FHHash(dim, prop.s(), rd);
-                    return new FHSearch(hash, prop.b(), prop.tables(), data, rd);
+                    return new FHSearch(hash, prop.b(), prop.tables(), precision.of(data), rd, precision);
                 }
-            }, prop);
+            }, Runner::param, prop);
         }
         return Collections.emptyList();
     }
 
+    private static HashSearch hashSearch(SearchProperties prop, Hash<double[], int[], int[]> hash, VectorStore data) {
+        HashBucket bucket = new HashBucket(data.size(), prop.tables(), prop.seed());
+        if (prop.threads() <= 1) {
+            return new HashSearch(hash, data, bucket);
+        }
+        ForkJoinPool pool = new ForkJoinPool(prop.threads());
+        try {
+            return new HashSearch(hash, data, bucket, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Query param(Query query, SearchProperties prop) {
+        Query param = prop.deadline() <= 0 ? query : query.within(prop.deadline(), TimeUnit.MILLISECONDS);
+        return prop.stats() ? param.withStats() : param;
+    }
+
+    private static FHQuery param(FHQuery query, SearchProperties prop) {
+        FHQuery param = prop.deadline() <= 0 ? query : query.within(prop.deadline(), TimeUnit.MILLISECONDS);
+        return prop.stats() ? param.withStats() : param;
+    }
+
     private static <T extends Query> List<Row<Object>> evaluate(List<T> queries,
                                                                 Supplier<Search<T>> supplier,
+                                                                BiFunction<T, SearchProperties, T> params,
                                                                 SearchProperties prop) throws IOException {
         System.gc();
         long indexStart = System.currentTimeMillis();
@@ -188,7 +222,9 @@ public class Runner {
             T query = queries.get(i);
             long searchStart = System.currentTimeMillis();
             long prevSearchMemory = usedMemory();
-            List<IdxVal> found = searcher.nns(query);
+            // deadline starts with the search
+            T param = params.apply(query, prop);
+            SearchResult found = searcher.nns(param);
             long searchDuration = System.currentTimeMillis() - searchStart;
             long searchUsedMemory = usedMemory() - prevSearchMemory;
 
@@ -202,6 +238,18 @@ public class Runner {
             meta.put("index_used_memory", indexUsedMemory);
             meta.put("search_used_memory", searchUsedMemory);
             meta.put("found_size", found.size());
+            meta.put("expired", found.expired());
+            if (prop.stats()) {
+                SearchStats stats = found.stats();
+                meta.put("probes", stats.probes());
+                meta.put("candidates", stats.candidates());
+                meta.put("duplicates", stats.duplicates());
+                meta.put("verified", stats.verified());
+                meta.put("rounds", stats.rounds());
+                meta.put("hash_nanos", stats.hashNanos());
+                meta.put("candidate_nanos", stats.candidateNanos());
+                meta.put("verify_nanos", stats.verifyNanos());
+            }
             LOGGER.info(String.valueOf(meta));
             meta.put("dim", query.data().length == 0 ? 0 : query.data()[0].length);
             meta.put("query", query.query());
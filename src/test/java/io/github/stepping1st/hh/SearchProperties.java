@@ -4,6 +4,7 @@ package io.github.stepping1st.hh;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
+import io.github.stepping1st.hh.hash.ProjectionType;
 import io.github.stepping1st.hh.utils.IOUtils;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
@@ -47,6 +48,13 @@ public class SearchProperties {
                 .addOption("w", "bucket_width", true, "bucket_width (NH)")
                 .addOption(null, "separation_threshold", true, "separation threshold (FH)")
                 .addOption(null, "eval_dist", true, "distance from data and query for evaluation")
+                .addOption(null, "rank", true, "rank of low-rank random matrix (EH)")
+                .addOption(null, "probes", true, "multi-probe budget of BH, MH and EH")
+                .addOption(null, "threads", true, "threads to build index")
+                .addOption(null, "deadline", true, "time budget of a query in milliseconds (0: none)")
+                .addOption(null, "stats", true, "record execution statistics of queries")
+                .addOption(null, "projection", true, "random projection of BH, MH and EH (GAUSSIAN,HADAMARD,SPARSE)")
+                .addOption(null, "precision", true, "storage precision of data and projections (DOUBLE,FLOAT)")
                 ;
         clArgs = new DefaultParser().parse(options, args);
     }
@@ -200,4 +208,33 @@ public class SearchProperties {
     public String evalDist() {
         return clArgs.getOptionValue("eval_dist");
     }
+
+    public Integer rank() {
+        String value = clArgs.getOptionValue("rank");
+        return value == null ? null : Integer.parseInt(value);
+    }
+
+    public int probes() {
+        return Integer.parseInt(clArgs.getOptionValue("probes", "0"));
+    }
+
+    public long deadline() {
+        return Long.parseLong(clArgs.getOptionValue("deadline", "0"));
+    }
+
+    public boolean stats() {
+        return Boolean.parseBoolean(clArgs.getOptionValue("stats", "false"));
+    }
+
+    public int threads() {
+        return Integer.parseInt(clArgs.getOptionValue("threads", "1"));
+    }
+
+    public ProjectionType projection() {
+        return ProjectionType.valueOf(clArgs.getOptionValue("projection", "GAUSSIAN"));
+    }
+
+    public Precision precision() {
+        return Precision.valueOf(clArgs.getOptionValue("precision", "DOUBLE"));
+    }
 }
@@ -1,6 +1,7 @@
 package io.github.stepping1st.hh.utils;
 
 
+import io.github.stepping1st.hh.MappedVectorStore;
 import io.github.stepping1st.hh.column.Row;
 
 import java.io.BufferedReader;
@@ -64,6 +65,9 @@ public class IOUtils {
     }
 
     public static double[][] read(Path path) throws IOException {
+        if (path.getFileName().toString().endsWith("fvecs")) {
+            return fvecs(path);
+        }
         InputStream inputStream = Files.newInputStream(path);
         if (path.getFileName().toString().endsWith("gz")) {
             return readGzip(inputStream);
@@ -72,6 +76,15 @@ public class IOUtils {
         }
     }
 
+    public static double[][] fvecs(Path path) throws IOException {
+        MappedVectorStore store = MappedVectorStore.fvecs(path);
+        double[][] result = new double[store.size()][];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = store.row(i);
+        }
+        return result;
+    }
+
     public static double[][] read(InputStream input) throws IOException {
         BufferedReader reader = new BufferedReader(new InputStreamReader(input));
         double[][] result = new double[0][];